@@ -227,6 +227,11 @@ class CSpec
   Hashtable m_states; /* Hashtable taking state indices (Integer) 
 			 to state name (String). */
 
+  /* Keyword table (%keyword). */
+  Vector m_keywords; /* Keywords (String), in declaration order. */
+  Vector m_keyword_values; /* Java expression (String) for the
+			      value of each keyword. */
+
   /* Regular Expression Macros. */ 
   Hashtable m_macros; /* Hashtable taking macro name (String)
 				to corresponding char buffer that
@@ -250,7 +255,7 @@ class CSpec
   /* DFA Machine. */
   Vector m_dfa_states; /* Vector of states, with index
 				 corresponding to label. */
-  Hashtable m_dfa_sets; /* Hashtable taking set of NFA states
+  java.util.Map m_dfa_sets; /* Hashtable taking set of NFA states
 				  to corresponding DFA state, 
 				  if the latter exists. */
   
@@ -291,6 +296,13 @@ class CSpec
   boolean m_unix;
   boolean m_public;
   boolean m_ignorecase;
+  boolean m_byte_input; /* Scan ASCII bytes, not chars (%byte). */
+  boolean m_flat_table; /* One state-indexed transition array (%flat). */
+  boolean m_direct_code; /* Transitions as code, not tables (%direct). */
+  boolean m_table_file; /* Tables in a binary resource (%tablefile). */
+  int m_dfa_threads; /* Threads building the DFA (%parallel), 0 if serial. */
+  boolean m_hopcroft; /* Minimize with Hopcroft's algorithm (%hopcroft). */
+  java.io.File m_spec_dir; /* Directory of the specification file. */
 
   char m_init_code[];
   int m_init_read;
@@ -360,6 +372,10 @@ class CSpec
 	m_states = new Hashtable();
 	m_states.put(new String("YYINITIAL"),new Integer(m_states.size()));
 
+	/* Initialize keyword table. */
+	m_keywords = new Vector();
+	m_keyword_values = new Vector();
+
 	/* Initialize hashtable for lexical macros. */
 	m_macros = new Hashtable();
 
@@ -373,6 +389,13 @@ class CSpec
         m_public = false;
 	m_yyeof = false;
 	m_ignorecase = false;
+	m_byte_input = false;
+	m_flat_table = false;
+	m_direct_code = false;
+	m_table_file = false;
+	m_dfa_threads = 0;
+	m_hopcroft = false;
+	m_spec_dir = null;
 
 	/* Initialize variables for JLex runtime options. */
 	m_verbose = true;
@@ -648,10 +671,11 @@ class CEmit
 	  m_outstream.println("\tprivate final int YY_F = -1;");
 	  m_outstream.println("\tprivate final int YY_NO_STATE = -1;");
 
-	  m_outstream.println("\tprivate final int YY_NOT_ACCEPT = 0;");
-	  m_outstream.println("\tprivate final int YY_START = 1;");
-	  m_outstream.println("\tprivate final int YY_END = 2;");
-	  m_outstream.println("\tprivate final int YY_NO_ANCHOR = 4;");
+	  /* Static, as the static yy_acpt[] names them. */
+	  m_outstream.println("\tprivate static final int YY_NOT_ACCEPT = 0;");
+	  m_outstream.println("\tprivate static final int YY_START = 1;");
+	  m_outstream.println("\tprivate static final int YY_END = 2;");
+	  m_outstream.println("\tprivate static final int YY_NO_ANCHOR = 4;");
 
 	  // internal
 	  m_outstream.println("\tprivate final int YY_BOL = "+m_spec.BOL+";");
@@ -668,12 +692,27 @@ class CEmit
 	    }
 
 	  /* Member Variables */
-	  m_outstream.println("\tprivate java.io.BufferedReader yy_reader;");
+	  if (m_spec.m_byte_input)
+	    {
+	      /* Null when scanning a caller's byte array. */
+	      m_outstream.println("\tprivate java.io.InputStream yy_reader;");
+	    }
+	  else
+	    {
+	      m_outstream.println("\tprivate java.io.BufferedReader yy_reader;");
+	    }
 	  m_outstream.println("\tprivate int yy_buffer_index;");
 	  m_outstream.println("\tprivate int yy_buffer_read;");
 	  m_outstream.println("\tprivate int yy_buffer_start;");
 	  m_outstream.println("\tprivate int yy_buffer_end;");
-	  m_outstream.println("\tprivate char yy_buffer[];");
+	  if (m_spec.m_byte_input)
+	    {
+	      m_outstream.println("\tprivate byte yy_buffer[];");
+	    }
+	  else
+	    {
+	      m_outstream.println("\tprivate char yy_buffer[];");
+	    }
 	  if (m_spec.m_count_chars)
 	    {
 	      m_outstream.println("\tprivate int yychar;");
@@ -692,35 +731,43 @@ class CEmit
 
 	  
 	  /* Function: first constructor (Reader) */
-	  m_outstream.print("\t");
-	  if (true == m_spec.m_public) {
-	    m_outstream.print("public ");
-	  }
-          m_outstream.print(new String(m_spec.m_class_name));
-	  m_outstream.print(" (java.io.Reader reader)");
-	  
-	  if (null != m_spec.m_init_throw_code)
+	  if (m_spec.m_byte_input)
 	    {
-	      m_outstream.println(); 
-	      m_outstream.print("\t\tthrows "); 
-	      m_outstream.print(new String(m_spec.m_init_throw_code,0,
-						m_spec.m_init_throw_read));
-	      m_outstream.println();
-	      m_outstream.println("\t\t{");
+	      /* A Reader has already decoded its bytes. */
+	      emit_byte_construct();
 	    }
 	  else
 	    {
-	      m_outstream.println(" {");
-	    }
+	      m_outstream.print("\t");
+	      if (true == m_spec.m_public) {
+		m_outstream.print("public ");
+	      }
+	      m_outstream.print(new String(m_spec.m_class_name));
+	      m_outstream.print(" (java.io.Reader reader)");
+	  
+	      if (null != m_spec.m_init_throw_code)
+		{
+		  m_outstream.println(); 
+		  m_outstream.print("\t\tthrows "); 
+		  m_outstream.print(new String(m_spec.m_init_throw_code,0,
+						    m_spec.m_init_throw_read));
+		  m_outstream.println();
+		  m_outstream.println("\t\t{");
+		}
+	      else
+		{
+		  m_outstream.println(" {");
+		}
 
-	  m_outstream.println("\t\tthis ();");	  
-	  m_outstream.println("\t\tif (null == reader) {");
-	  m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
-				 + "stream initializer.\"));");
-	  m_outstream.println("\t\t}");
-	  m_outstream.println("\t\tyy_reader = new java.io.BufferedReader(reader);");
-	  m_outstream.println("\t}");
-	  m_outstream.println();
+	      m_outstream.println("\t\tthis ();");    
+	      m_outstream.println("\t\tif (null == reader) {");
+	      m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
+				     + "stream initializer.\"));");
+	      m_outstream.println("\t\t}");
+	      m_outstream.println("\t\tyy_reader = new java.io.BufferedReader(reader);");
+	      m_outstream.println("\t}");
+	      m_outstream.println();
+	    }
 
 
 	  /* Function: second constructor (InputStream) */
@@ -749,7 +796,14 @@ class CEmit
 	  m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
 				 + "stream initializer.\"));");
 	  m_outstream.println("\t\t}");
-	  m_outstream.println("\t\tyy_reader = new java.io.BufferedReader(new java.io.InputStreamReader(instream));");
+	  if (m_spec.m_byte_input)
+	    {
+	      m_outstream.println("\t\tyy_reader = new java.io.BufferedInputStream(instream);");
+	    }
+	  else
+	    {
+	      m_outstream.println("\t\tyy_reader = new java.io.BufferedReader(new java.io.InputStreamReader(instream));");
+	    }
 	  m_outstream.println("\t}");
 	  m_outstream.println();
 
@@ -772,7 +826,9 @@ class CEmit
 	      m_outstream.println(" {");
 	    }
 	  
-	  m_outstream.println("\t\tyy_buffer = new char[YY_BUFFER_SIZE];");
+	  m_outstream.println("\t\tyy_buffer = new "
+			      + (m_spec.m_byte_input ? "byte" : "char")
+			      + "[YY_BUFFER_SIZE];");
 	  m_outstream.println("\t\tyy_buffer_read = 0;");
 	  m_outstream.println("\t\tyy_buffer_index = 0;");
 	  m_outstream.println("\t\tyy_buffer_start = 0;");
@@ -804,6 +860,177 @@ class CEmit
 
 	}
 
+  /***************************************************************
+    Function: emit_byte_construct
+    Description: Emits the constructors that scan bytes already
+    in memory, from a byte array or a ByteBuffer.  The scanner
+    reads the caller's array in place and never refills it.
+    **************************************************************/
+  private void emit_byte_construct
+    (
+     )
+      throws java.io.IOException
+	{
+	  /* Function: constructor (byte array) */
+	  emit_construct_head("byte buf[], int offset, int length");
+	  m_outstream.println("\t\tthis ();");	  
+	  m_outstream.println("\t\tif (null == buf) {");
+	  m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
+				 + "stream initializer.\"));");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tyy_reader = null;");
+	  m_outstream.println("\t\tyy_buffer = buf;");
+	  m_outstream.println("\t\tyy_buffer_index = offset;");
+	  m_outstream.println("\t\tyy_buffer_start = offset;");
+	  m_outstream.println("\t\tyy_buffer_end = offset;");
+	  m_outstream.println("\t\tyy_buffer_read = offset + length;");
+	  m_outstream.println("\t}");
+	  m_outstream.println();
+
+	  /* Function: constructor (ByteBuffer) */
+	  emit_construct_head("java.nio.ByteBuffer buf");
+	  m_outstream.println("\t\tthis ();");	  
+	  m_outstream.println("\t\tif (null == buf) {");
+	  m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
+				 + "stream initializer.\"));");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tyy_reader = null;");
+	  m_outstream.println("\t\tif (buf.hasArray()) {");
+	  m_outstream.println("\t\t\tyy_buffer = buf.array();");
+	  m_outstream.println("\t\t\tyy_buffer_index = buf.arrayOffset() + buf.position();");
+	  m_outstream.println("\t\t} else {");
+	  m_outstream.println("\t\t\tyy_buffer = new byte[buf.remaining()];");
+	  m_outstream.println("\t\t\tbuf.duplicate().get(yy_buffer);");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tyy_buffer_start = yy_buffer_index;");
+	  m_outstream.println("\t\tyy_buffer_end = yy_buffer_index;");
+	  m_outstream.println("\t\tyy_buffer_read = yy_buffer_index + buf.remaining();");
+	  m_outstream.println("\t}");
+	  m_outstream.println();
+	}
+
+  /***************************************************************
+    Function: emit_construct_head
+    Description: Emits the signature of a public constructor
+    taking the given parameters, up to the opening brace.
+    **************************************************************/
+  private void emit_construct_head
+    (
+     String params
+     )
+      throws java.io.IOException
+	{
+	  m_outstream.print("\t");
+	  if (true == m_spec.m_public) {
+	    m_outstream.print("public ");
+	  }
+          m_outstream.print(new String(m_spec.m_class_name));
+	  m_outstream.print(" (" + params + ")");
+	  
+	  if (null != m_spec.m_init_throw_code)
+	    {
+	      m_outstream.println(); 
+	      m_outstream.print("\t\tthrows "); 
+	      m_outstream.println(new String(m_spec.m_init_throw_code,0,
+						m_spec.m_init_throw_read));
+	      m_outstream.println("\t\t{");
+	    }
+	  else
+	    {
+	      m_outstream.println(" {");
+	    }
+	}
+
+  /***************************************************************
+    Function: emit_keywords
+    Description: Emits the %keyword table and yykeyword(), which
+    looks the matched text up through a minimal perfect hash
+    (see CKeywords) and returns its value, or -1 if it is not a
+    keyword.  A rule for identifiers can then cover keywords too,
+    instead of one rule, and DFA states, per keyword.
+    **************************************************************/
+  private void emit_keywords
+    (
+     )
+      throws java.io.IOException
+      {
+	CKeywords kw = new CKeywords(m_spec.m_keywords);
+	int n = kw.m_slot.length;
+	int i;
+
+	m_outstream.println("\tprivate static final char yy_kw_text[][] = {");
+	for (i = 0; i < n; ++i)
+	  {
+	    String word = (String) m_spec.m_keywords.elementAt(kw.m_slot[i]);
+	    m_outstream.print("\t\t\"");
+	    for (int j = 0; j < word.length(); ++j)
+	      {
+		char c = word.charAt(j);
+		if ('"' == c || '\\' == c)
+		  {
+		    m_outstream.print('\\');
+		  }
+		m_outstream.print(c);
+	      }
+	    m_outstream.println("\".toCharArray()" + (i < n - 1 ? "," : ""));
+	  }
+	m_outstream.println("\t};");
+
+	m_outstream.println("\tprivate static final int yy_kw_value[] = {");
+	for (i = 0; i < n; ++i)
+	  {
+	    m_outstream.println("\t\t" 
+				+ m_spec.m_keyword_values.elementAt(kw.m_slot[i])
+				+ (i < n - 1 ? "," : ""));
+	  }
+	m_outstream.println("\t};");
+
+	m_outstream.print("\tprivate static final int yy_kw_disp[] = {");
+	for (i = 0; i < kw.m_disp.length; ++i)
+	  {
+	    m_outstream.print((0 == i % 10 ? "\n\t\t" : " ") + kw.m_disp[i]
+			      + (i < kw.m_disp.length - 1 ? "," : ""));
+	  }
+	m_outstream.println();
+	m_outstream.println("\t};");
+
+	m_outstream.println("\tprivate int yykeyword () {");
+	m_outstream.println("\t\tint len = yy_buffer_end - yy_buffer_start;");
+	m_outstream.println("\t\tif (len < " + kw.m_min_length 
+			    + " || len > " + kw.m_max_length + ") {");
+	m_outstream.println("\t\t\treturn -1;");
+	m_outstream.println("\t\t}");
+	if (kw.m_ends_only)
+	  {
+	    m_outstream.println("\t\tint h = (yy_buffer[yy_buffer_start] * 31"
+				+ " + yy_buffer[yy_buffer_end - 1]) * 31 + len;");
+	  }
+	else
+	  {
+	    m_outstream.println("\t\tint h = len;");
+	    m_outstream.println("\t\tfor (int i = yy_buffer_start; i < yy_buffer_end; i++) {");
+	    m_outstream.println("\t\t\th = h * " + kw.m_mult + " + yy_buffer[i];");
+	    m_outstream.println("\t\t}");
+	  }
+	m_outstream.println("\t\tint k = (int) (((h * 0x" 
+			    + Integer.toHexString(CKeywords.BUCKET_MIX)
+			    + " & 0xffffffffL) * " + n + ") >>> 32);");
+	m_outstream.println("\t\tk = (int) ((((h ^ yy_kw_disp[k]) * 0x" 
+			    + Integer.toHexString(CKeywords.MIX)
+			    + " & 0xffffffffL) * " + n + ") >>> 32);");
+	m_outstream.println("\t\tchar text[] = yy_kw_text[k];");
+	m_outstream.println("\t\tif (text.length != len) {");
+	m_outstream.println("\t\t\treturn -1;");
+	m_outstream.println("\t\t}");
+	m_outstream.println("\t\tfor (int i = 0; i < len; i++) {");
+	m_outstream.println("\t\t\tif (text[i] != yy_buffer[yy_buffer_start + i]) {");
+	m_outstream.println("\t\t\t\treturn -1;");
+	m_outstream.println("\t\t\t}");
+	m_outstream.println("\t\t}");
+	m_outstream.println("\t\treturn yy_kw_value[k];");
+	m_outstream.println("\t}");
+      }
+
   /***************************************************************
     Function: emit_states
     Description: Emits constants that serve as lexical states,
@@ -909,6 +1136,8 @@ class CEmit
 	m_outstream.println("\t}");*/
 
 	/* Function: yy_advance */
+	/* Bytes are sign-extended; the tables want 0 to 255. */
+	String yy_unsigned = m_spec.m_byte_input ? " & 0xff" : "";
 	m_outstream.println("\tprivate int yy_advance ()");
 	m_outstream.println("\t\tthrows java.io.IOException {");
 	/*m_outstream.println("\t\t{");*/
@@ -918,11 +1147,21 @@ class CEmit
 	m_outstream.println();
 
 	m_outstream.println("\t\tif (yy_buffer_index < yy_buffer_read) {");
-	m_outstream.println("\t\t\treturn yy_buffer[yy_buffer_index++];");
+	m_outstream.println("\t\t\treturn yy_buffer[yy_buffer_index++]"
+			    + yy_unsigned + ";");
 	/*m_outstream.println("\t\t\t++yy_buffer_index;");*/
 	m_outstream.println("\t\t}");
 	m_outstream.println();
 
+	if (m_spec.m_byte_input)
+	  {
+	    /* A caller's array is all there is; never move it. */
+	    m_outstream.println("\t\tif (null == yy_reader) {");
+	    m_outstream.println("\t\t\treturn YY_EOF;");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println();
+	  }
+
 	m_outstream.println("\t\tif (0 != yy_buffer_start) {");
 	m_outstream.println("\t\t\ti = yy_buffer_start;");
 	m_outstream.println("\t\t\tj = 0;");
@@ -958,7 +1197,8 @@ class CEmit
 	m_outstream.println("\t\t\tyy_buffer_read = yy_buffer_read + next_read;");
 	m_outstream.println("\t\t}");
 
-	m_outstream.println("\t\treturn yy_buffer[yy_buffer_index++];");
+	m_outstream.println("\t\treturn yy_buffer[yy_buffer_index++]"
+			    + yy_unsigned + ";");
 	m_outstream.println("\t}");
 	
 	/* Function: yy_move_end */
@@ -1021,9 +1261,21 @@ class CEmit
 
 	/* Function: yytext */
 	m_outstream.println("\tprivate java.lang.String yytext () {");
-	m_outstream.println("\t\treturn (new java.lang.String(yy_buffer,");
-	m_outstream.println("\t\t\tyy_buffer_start,");
-	m_outstream.println("\t\t\tyy_buffer_end - yy_buffer_start));");
+	if (m_spec.m_byte_input)
+	  {
+	    /* No rule matches a byte above 127, so a lexeme is ASCII
+	       and is copied straight in. */
+	    m_outstream.println("\t\treturn (new java.lang.String(yy_buffer,");
+	    m_outstream.println("\t\t\tyy_buffer_start,");
+	    m_outstream.println("\t\t\tyy_buffer_end - yy_buffer_start,");
+	    m_outstream.println("\t\t\tjava.nio.charset.StandardCharsets.ISO_8859_1));");
+	  }
+	else
+	  {
+	    m_outstream.println("\t\treturn (new java.lang.String(yy_buffer,");
+	    m_outstream.println("\t\t\tyy_buffer_start,");
+	    m_outstream.println("\t\t\tyy_buffer_end - yy_buffer_start));");
+	  }
 	m_outstream.println("\t}");
 
 	/* Function: yylength */
@@ -1031,11 +1283,19 @@ class CEmit
 	m_outstream.println("\t\treturn yy_buffer_end - yy_buffer_start;");
 	m_outstream.println("\t}");
 
+	/* Function: yykeyword */
+	if (0 < m_spec.m_keywords.size())
+	  {
+	    emit_keywords();
+	  }
+
 	/* Function: yy_double */
-	m_outstream.println("\tprivate char[] yy_double (char buf[]) {");
+	String yy_elem = m_spec.m_byte_input ? "byte" : "char";
+	m_outstream.println("\tprivate " + yy_elem + "[] yy_double ("
+			    + yy_elem + " buf[]) {");
 	m_outstream.println("\t\tint i;");
-	m_outstream.println("\t\tchar newbuf[];");
-	m_outstream.println("\t\tnewbuf = new char[2*buf.length];");
+	m_outstream.println("\t\t" + yy_elem + " newbuf[];");
+	m_outstream.println("\t\tnewbuf = new " + yy_elem + "[2*buf.length];");
 	m_outstream.println("\t\tfor (i = 0; i < buf.length; ++i) {");
 	m_outstream.println("\t\t\tnewbuf[i] = buf[i];");
 	m_outstream.println("\t\t}");
@@ -1068,11 +1328,17 @@ class CEmit
 	m_outstream.println("\t}");*/
 
 
+	if (m_spec.m_table_file)
+	  {
+	    emit_table_loader();
+	    return;
+	  }
+
 	// Function: private int [][] unpackFromString(int size1, int size2, String st)
 	// Added 6/24/98 Raimondas Lencevicius
 	// May be made more efficient by replacing String operations
 	// Assumes correctly formed input String. Performs no error checking
-	m_outstream.println("\tprivate int[][] unpackFromString"+
+	m_outstream.println("\tprivate static int[][] unpackFromString"+
 			    "(int size1, int size2, String st) {");
 	m_outstream.println("\t\tint colonIndex = -1;");
 	m_outstream.println("\t\tString lengthString;");
@@ -1113,6 +1379,17 @@ class CEmit
 	m_outstream.println("\t\t}");
 	m_outstream.println("\t\treturn res;");
 	m_outstream.println("\t}");
+
+	if (m_spec.m_flat_table && flat_short())
+	  {
+	    m_outstream.println("\tprivate static short[] yy_to_short (int a[]) {");
+	    m_outstream.println("\t\tshort res[] = new short[a.length];");
+	    m_outstream.println("\t\tfor (int i = 0; i < a.length; i++) {");
+	    m_outstream.println("\t\t\tres[i] = (short) a[i];");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\treturn res;");
+	    m_outstream.println("\t}");
+	  }
       }
 
   /***************************************************************
@@ -1169,7 +1446,15 @@ class CEmit
 	    CUtility.ASSERT(null != m_outstream);
 	  }
 
-	m_outstream.println("\tprivate int yy_acpt[] = {");
+	if (m_spec.m_table_file)
+	  {
+	    emit_table_file();
+	    return;
+	  }
+
+	/* The tables are static, so they are unpacked once per class,
+	   not again for every new scanner. */
+	m_outstream.println("\tprivate static final int yy_acpt[] = {");
 	size = m_spec.m_accept_vector.size();
 	for (elem = 0; elem < size; ++elem)
 	  {
@@ -1216,13 +1501,25 @@ class CEmit
 	int[] yy_cmap = new int[m_spec.m_ccls_map.length];
 	for (i = 0; i < m_spec.m_ccls_map.length; ++i)
 	    yy_cmap[i] = m_spec.m_col_map[m_spec.m_ccls_map[i]];
-	m_outstream.print("\tprivate int yy_cmap[] = unpackFromString(");
+	m_outstream.print("\tprivate static final int yy_cmap[] = unpackFromString(");
 	emit_table_as_string(new int[][] { yy_cmap });
 	m_outstream.println(")[0];");
 	m_outstream.println();
 
+	if (m_spec.m_direct_code)
+	  {
+	    emit_direct_code();
+	    return;
+	  }
+
+	if (m_spec.m_flat_table)
+	  {
+	    emit_flat_table();
+	    return;
+	  }
+
 	// CSA: modified yy_rmap to use string packing 9-Aug-1999
-	m_outstream.print("\tprivate int yy_rmap[] = unpackFromString(");
+	m_outstream.print("\tprivate static final int yy_rmap[] = unpackFromString(");
 	emit_table_as_string(new int[][] { m_spec.m_row_map });
 	m_outstream.println(")[0];");
 	m_outstream.println();
@@ -1238,12 +1535,540 @@ class CEmit
 	    yy_nxt[elem] = dtrans.m_dtrans;
 	}
 	m_outstream.print
-	  ("\tprivate int yy_nxt[][] = unpackFromString(");
+	  ("\tprivate static final int yy_nxt[][] = unpackFromString(");
 	emit_table_as_string(yy_nxt);
 	m_outstream.println(");");
 	m_outstream.println();
       }
 
+  /***************************************************************
+    Function: emit_flat_table
+    Description: Emits the transitions of %flat as one array,
+    yy_trans[state * YY_NCLS + class], with yy_rmap folded in.
+    An entry is twice the next state, plus one if that state
+    accepts, or YY_F; the driver then needs no yy_acpt lookup
+    per character.  Entries are shorts when they fit.
+    **************************************************************/
+  private void emit_flat_table
+    (
+     )
+      throws java.io.IOException
+      {
+	int[] yy_trans = flat_table();
+
+	m_outstream.println("\tprivate final int YY_NCLS = " 
+			    + m_spec.m_dtrans_ncols + ";");
+	if (flat_short())
+	  {
+	    m_outstream.print("\tprivate static final short yy_trans[] = "
+			      + "yy_to_short(unpackFromString(");
+	    emit_table_as_string(new int[][] { yy_trans });
+	    m_outstream.println(")[0]);");
+	  }
+	else
+	  {
+	    m_outstream.print("\tprivate static final int yy_trans[] = unpackFromString(");
+	    emit_table_as_string(new int[][] { yy_trans });
+	    m_outstream.println(")[0];");
+	  }
+	m_outstream.println();
+      }
+
+  /***************************************************************
+    Function: flat_table
+    Description: Builds the %flat transition array.
+    **************************************************************/
+  private int[] flat_table
+    (
+     )
+      {
+	int nstates = m_spec.m_row_map.length;
+	int ncols = m_spec.m_dtrans_ncols;
+	int[] yy_trans = new int[nstates * ncols];
+	for (int state = 0; state < nstates; ++state)
+	  {
+	    CDTrans dtrans = (CDTrans)
+	      m_spec.m_dtrans_vector.elementAt(m_spec.m_row_map[state]);
+	    for (int i = 0; i < ncols; ++i)
+	      {
+		int next = dtrans.m_dtrans[i];
+		if (CDTrans.F == next)
+		  {
+		    yy_trans[state * ncols + i] = CDTrans.F;
+		  }
+		else
+		  {
+		    yy_trans[state * ncols + i] = 2 * next
+		      + (null != m_spec.m_accept_vector.elementAt(next) ? 1 : 0);
+		  }
+	      }
+	  }
+	return yy_trans;
+      }
+
+  /***************************************************************
+    Function: emit_direct_code
+    Description: Emits the transitions of %direct as code:
+    yy_step(state, class) is a switch on the state with, in each
+    arm, a switch on the character class returning the next
+    state in the %flat encoding, twice the state plus one if it
+    accepts, or -1 (YY_F).  Each arm's default is its most common
+    target.  The arms are spread over methods yy_step0, yy_step1,
+    ... of at most MAX_STEP_BYTES estimated bytecode, so none
+    reaches the 64K limit or is too big for the JIT to compile.
+    **************************************************************/
+  private static final int MAX_STEP_BYTES = 7000;
+
+  private void emit_direct_code
+    (
+     )
+      throws java.io.IOException
+      {
+	int[] yy_trans = flat_table();
+	int nstates = m_spec.m_row_map.length;
+	int ncols = m_spec.m_dtrans_ncols;
+
+	/* Split the states into methods. */
+	Vector starts = new Vector();
+	int bytes = 0;
+	for (int state = 0; state < nstates; ++state)
+	  {
+	    /* The larger of a tableswitch over the classes that are
+	       not the default and a lookupswitch, a return per target. */
+	    int base = state * ncols;
+	    int common = direct_default(yy_trans, base, ncols);
+	    Hashtable targets = new Hashtable();
+	    int labels = 0;
+	    int lo = ncols;
+	    int hi = 0;
+	    for (int i = 0; i < ncols; ++i)
+	      {
+		if (yy_trans[base + i] != common)
+		  {
+		    targets.put(Integer.valueOf(yy_trans[base + i]), targets);
+		    ++labels;
+		    lo = Math.min(lo, i);
+		    hi = Math.max(hi, i);
+		  }
+	      }
+	    int size = 32 + 4 * targets.size()
+	      + Math.max(4 * (hi - lo + 1), 8 * labels);
+	    if (0 == state || bytes + size > MAX_STEP_BYTES)
+	      {
+		starts.addElement(Integer.valueOf(state));
+		bytes = 0;
+	      }
+	    bytes += size;
+	  }
+	starts.addElement(Integer.valueOf(nstates));
+
+	int nmethods = starts.size() - 1;
+	if (1 < nmethods)
+	  {
+	    m_outstream.println("\tprivate static int yy_step (int state, int c) {");
+	    for (int m = 1; m < nmethods; ++m)
+	      {
+		m_outstream.println("\t\tif (state < " + starts.elementAt(m) 
+				    + ") return yy_step" + (m - 1) + "(state, c);");
+	      }
+	    m_outstream.println("\t\treturn yy_step" + (nmethods - 1) 
+				+ "(state, c);");
+	    m_outstream.println("\t}");
+	  }
+
+	for (int m = 0; m < nmethods; ++m)
+	  {
+	    int from = ((Integer) starts.elementAt(m)).intValue();
+	    int to = ((Integer) starts.elementAt(m + 1)).intValue();
+	    m_outstream.println("\tprivate static int yy_step" 
+				+ (1 < nmethods ? String.valueOf(m) : "")
+				+ " (int state, int c) {");
+	    m_outstream.println("\t\tswitch (state) {");
+	    for (int state = from; state < to; ++state)
+	      {
+		emit_direct_state(yy_trans, state, ncols);
+	      }
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\treturn " + CDTrans.F + ";");
+	    m_outstream.println("\t}");
+	  }
+	m_outstream.println();
+      }
+
+  /***************************************************************
+    Function: emit_direct_state
+    Description: Emits the switch arm of one %direct state.
+    **************************************************************/
+  private void emit_direct_state
+    (
+     int[] yy_trans,
+     int state,
+     int ncols
+     )
+      throws java.io.IOException
+      {
+	int base = state * ncols;
+	int common = direct_default(yy_trans, base, ncols);
+	int i;
+
+	m_outstream.println("\t\tcase " + state + ":");
+	for (i = 0; i < ncols && yy_trans[base + i] == common; ++i)
+	  {
+	  }
+	if (i == ncols)
+	  {
+	    m_outstream.println("\t\t\treturn " + common + ";");
+	    return;
+	  }
+	m_outstream.println("\t\t\tswitch (c) {");
+	boolean done[] = new boolean[ncols];
+	for (i = 0; i < ncols; ++i)
+	  {
+	    int target = yy_trans[base + i];
+	    if (done[i] || target == common)
+	      {
+		continue;
+	      }
+	    /* All the classes with this target share one return. */
+	    m_outstream.print("\t\t\t");
+	    for (int j = i; j < ncols; ++j)
+	      {
+		if (yy_trans[base + j] == target)
+		  {
+		    m_outstream.print("case " + j + ": ");
+		    done[j] = true;
+		  }
+	      }
+	    m_outstream.println("return " + target + ";");
+	  }
+	m_outstream.println("\t\t\tdefault: return " + common + ";");
+	m_outstream.println("\t\t\t}");
+      }
+
+  /***************************************************************
+    Function: emit_direct_runs
+    Description: Emits, at the top of the %direct scanning loop,
+    a tight loop for every state with transitions to itself: it
+    steps over the buffered characters that keep the scanner in
+    that state without going through yy_advance() and yy_step(),
+    marking the end if the state accepts.  This is where direct
+    code gains over a table, on identifiers, comments and the like.
+    **************************************************************/
+  private void emit_direct_runs
+    (
+     )
+      throws java.io.IOException
+      {
+	int[] yy_trans = flat_table();
+	int nstates = m_spec.m_row_map.length;
+	int ncols = m_spec.m_dtrans_ncols;
+	String yy_char = "yy_cmap[yy_buffer[yy_buffer_index]"
+	  + (m_spec.m_byte_input ? " & 0xff]" : "]");
+	boolean any = false;
+
+	for (int state = 0; state < nstates; ++state)
+	  {
+	    int base = state * ncols;
+	    long mask = 0;
+	    boolean self = false;
+	    for (int i = 0; i < ncols; ++i)
+	      {
+		if (CDTrans.F != yy_trans[base + i]
+		    && state == yy_trans[base + i] >> 1)
+		  {
+		    self = true;
+		    mask |= 64 > i ? 1L << i : 0;
+		  }
+	      }
+	    if (false == self)
+	      {
+		continue;
+	      }
+	    if (false == any)
+	      {
+		m_outstream.println("\t\t\tif (!yy_initial) {");
+		m_outstream.println("\t\t\t\tswitch (yy_state) {");
+		any = true;
+	      }
+	    m_outstream.println("\t\t\t\tcase " + state + ":");
+	    if (64 >= ncols)
+	      {
+		m_outstream.println("\t\t\t\t\twhile (yy_buffer_index < yy_buffer_read");
+		m_outstream.println("\t\t\t\t\t       && 0 != (0x" 
+				    + Long.toHexString(mask) + "L & 1L << "
+				    + yy_char + ")) {");
+		m_outstream.println("\t\t\t\t\t\t++yy_buffer_index;");
+		m_outstream.println("\t\t\t\t\t}");
+	      }
+	    else
+	      {
+		m_outstream.println("\t\t\t\t\twhile (yy_buffer_index < yy_buffer_read) {");
+		m_outstream.print("\t\t\t\t\t\tswitch (" + yy_char + ") {");
+		for (int i = 0; i < ncols; ++i)
+		  {
+		    if (CDTrans.F != yy_trans[base + i]
+			&& state == yy_trans[base + i] >> 1)
+		      {
+			m_outstream.print(" case " + i + ":");
+		      }
+		  }
+		m_outstream.println();
+		m_outstream.println("\t\t\t\t\t\t\t++yy_buffer_index;");
+		m_outstream.println("\t\t\t\t\t\t\tcontinue;");
+		m_outstream.println("\t\t\t\t\t\t}");
+		m_outstream.println("\t\t\t\t\t\tbreak;");
+		m_outstream.println("\t\t\t\t\t}");
+	      }
+	    if (null != m_spec.m_accept_vector.elementAt(state))
+	      {
+		m_outstream.println("\t\t\t\t\tyy_mark_end();");
+	      }
+	    m_outstream.println("\t\t\t\t\tbreak;");
+	  }
+	if (any)
+	  {
+	    m_outstream.println("\t\t\t\t}");
+	    m_outstream.println("\t\t\t}");
+	  }
+      }
+
+  /***************************************************************
+    Function: direct_default
+    Description: The most common target in one state's row,
+    which its %direct switch arm takes as the default.
+    **************************************************************/
+  private int direct_default
+    (
+     int[] yy_trans,
+     int base,
+     int ncols
+     )
+      {
+	Hashtable counts = new Hashtable();
+	int common = CDTrans.F;
+	int best = 0;
+	for (int i = 0; i < ncols; ++i)
+	  {
+	    Integer target = Integer.valueOf(yy_trans[base + i]);
+	    Integer count = (Integer) counts.get(target);
+	    int n = (null == count ? 0 : count.intValue()) + 1;
+	    counts.put(target, Integer.valueOf(n));
+	    if (n > best)
+	      {
+		best = n;
+		common = target.intValue();
+	      }
+	  }
+	return common;
+      }
+
+  /***************************************************************
+    Function: emit_table_file
+    Description: Writes the tables of %tablefile to
+    <class>.tables beside the specification and emits static
+    fields that load them once, when the class is initialized.
+
+    The file is a sequence of arrays in the order the fields are
+    declared: yy_acpt, yy_cmap, then yy_trans (with %flat) or
+    yy_rmap and the rows of yy_nxt.  An array is a 4-byte length,
+    a 1-byte element size (2 or 4) and the elements, all
+    big-endian; yy_nxt is preceded by its row count.
+    **************************************************************/
+  private void emit_table_file
+    (
+     )
+      throws java.io.IOException
+      {
+	String name = new String(m_spec.m_class_name) + ".tables";
+	java.io.DataOutputStream out = new java.io.DataOutputStream(
+	  new java.io.BufferedOutputStream(new java.io.FileOutputStream(
+	    new java.io.File(m_spec.m_spec_dir, name))));
+	try
+	  {
+	    int size = m_spec.m_accept_vector.size();
+	    int[] yy_acpt = new int[size];
+	    for (int elem = 0; elem < size; ++elem)
+	      {
+		if (null == m_spec.m_accept_vector.elementAt(elem))
+		  {
+		    yy_acpt[elem] = 0; /* YY_NOT_ACCEPT */
+		  }
+		else if (CSpec.NONE == m_spec.m_anchor_array[elem])
+		  {
+		    yy_acpt[elem] = 4; /* YY_NO_ANCHOR */
+		  }
+		else
+		  {
+		    /* YY_START and YY_END have CSpec's values. */
+		    yy_acpt[elem] = m_spec.m_anchor_array[elem];
+		  }
+	      }
+	    write_table(out, yy_acpt, 4);
+
+	    int[] yy_cmap = new int[m_spec.m_ccls_map.length];
+	    for (int i = 0; i < m_spec.m_ccls_map.length; ++i)
+	      {
+		yy_cmap[i] = m_spec.m_col_map[m_spec.m_ccls_map[i]];
+	      }
+	    write_table(out, yy_cmap, 4);
+
+	    m_outstream.println("\tprivate static final int yy_acpt[];");
+	    m_outstream.println("\tprivate static final int yy_cmap[];");
+	    if (m_spec.m_direct_code)
+	      {
+		/* Transitions are emitted as code below. */
+	      }
+	    else if (m_spec.m_flat_table)
+	      {
+		write_table(out, flat_table(), flat_short() ? 2 : 4);
+		m_outstream.println("\tprivate final int YY_NCLS = " 
+				    + m_spec.m_dtrans_ncols + ";");
+		m_outstream.println("\tprivate static final " 
+				    + (flat_short() ? "short" : "int")
+				    + " yy_trans[];");
+	      }
+	    else
+	      {
+		write_table(out, m_spec.m_row_map, 4);
+		size = m_spec.m_dtrans_vector.size();
+		out.writeInt(size);
+		for (int elem = 0; elem < size; ++elem)
+		  {
+		    write_table(out, ((CDTrans) m_spec.m_dtrans_vector
+				      .elementAt(elem)).m_dtrans, 4);
+		  }
+		m_outstream.println("\tprivate static final int yy_rmap[];");
+		m_outstream.println("\tprivate static final int yy_nxt[][];");
+	      }
+	  }
+	finally
+	  {
+	    out.close();
+	  }
+
+	m_outstream.println("\tstatic {");
+	m_outstream.println("\t\tjava.nio.ByteBuffer yy_tables = yy_load(\""
+			    + name + "\");");
+	m_outstream.println("\t\tyy_acpt = yy_ints(yy_tables);");
+	m_outstream.println("\t\tyy_cmap = yy_ints(yy_tables);");
+	if (m_spec.m_direct_code)
+	  {
+	    /* Transitions are emitted as code below. */
+	  }
+	else if (m_spec.m_flat_table)
+	  {
+	    m_outstream.println("\t\tyy_trans = yy_" 
+				+ (flat_short() ? "shorts" : "ints")
+				+ "(yy_tables);");
+	  }
+	else
+	  {
+	    m_outstream.println("\t\tyy_rmap = yy_ints(yy_tables);");
+	    m_outstream.println("\t\tyy_nxt = new int[yy_tables.getInt()][];");
+	    m_outstream.println("\t\tfor (int i = 0; i < yy_nxt.length; i++) {");
+	    m_outstream.println("\t\t\tyy_nxt[i] = yy_ints(yy_tables);");
+	    m_outstream.println("\t\t}");
+	  }
+	m_outstream.println("\t}");
+	m_outstream.println();
+
+	if (m_spec.m_direct_code)
+	  {
+	    emit_direct_code();
+	  }
+      }
+
+  /***************************************************************
+    Function: write_table
+    Description: Writes one %tablefile array with elements of
+    the given size in bytes.
+    **************************************************************/
+  private void write_table
+    (
+     java.io.DataOutputStream out,
+     int[] table,
+     int width
+     )
+      throws java.io.IOException
+      {
+	out.writeInt(table.length);
+	out.writeByte(width);
+	for (int i = 0; i < table.length; ++i)
+	  {
+	    if (2 == width)
+	      {
+		out.writeShort(table[i]);
+	      }
+	    else
+	      {
+		out.writeInt(table[i]);
+	      }
+	  }
+      }
+
+  /***************************************************************
+    Function: emit_table_loader
+    Description: Emits the static helpers that read the tables
+    of %tablefile: the whole resource in one read, then each
+    array with a bulk get.
+    **************************************************************/
+  private void emit_table_loader
+    (
+     )
+      throws java.io.IOException
+      {
+	String class_name = new String(m_spec.m_class_name);
+
+	m_outstream.println("\tprivate static java.nio.ByteBuffer yy_load (String name) {");
+	m_outstream.println("\t\tjava.io.InputStream in = " + class_name 
+			    + ".class.getResourceAsStream(name);");
+	m_outstream.println("\t\tif (null == in) {");
+	m_outstream.println("\t\t\tthrow (new Error(\"Error: Missing table "
+			    + "resource \" + name + \".\"));");
+	m_outstream.println("\t\t}");
+	m_outstream.println("\t\ttry {");
+	m_outstream.println("\t\t\ttry {");
+	m_outstream.println("\t\t\t\treturn java.nio.ByteBuffer.wrap(in.readAllBytes());");
+	m_outstream.println("\t\t\t} finally {");
+	m_outstream.println("\t\t\t\tin.close();");
+	m_outstream.println("\t\t\t}");
+	m_outstream.println("\t\t} catch (java.io.IOException e) {");
+	m_outstream.println("\t\t\tthrow (new Error(\"Error: Cannot read table "
+			    + "resource \" + name + \".\", e));");
+	m_outstream.println("\t\t}");
+	m_outstream.println("\t}");
+
+	m_outstream.println("\tprivate static int[] yy_ints (java.nio.ByteBuffer b) {");
+	m_outstream.println("\t\tint res[] = new int[b.getInt()];");
+	m_outstream.println("\t\tb.get();");
+	m_outstream.println("\t\tb.asIntBuffer().get(res);");
+	m_outstream.println("\t\tb.position(b.position() + 4 * res.length);");
+	m_outstream.println("\t\treturn res;");
+	m_outstream.println("\t}");
+
+	if (m_spec.m_flat_table && flat_short())
+	  {
+	    m_outstream.println("\tprivate static short[] yy_shorts (java.nio.ByteBuffer b) {");
+	    m_outstream.println("\t\tshort res[] = new short[b.getInt()];");
+	    m_outstream.println("\t\tb.get();");
+	    m_outstream.println("\t\tb.asShortBuffer().get(res);");
+	    m_outstream.println("\t\tb.position(b.position() + 2 * res.length);");
+	    m_outstream.println("\t\treturn res;");
+	    m_outstream.println("\t}");
+	  }
+      }
+
+  /***************************************************************
+    Function: flat_short
+    Description: True if every %flat table entry fits in a short.
+    **************************************************************/
+  private boolean flat_short
+    (
+     )
+      {
+	return 2 * m_spec.m_row_map.length + 1 <= Short.MAX_VALUE;
+      }
+
   /***************************************************************
     Function: emit_driver
     Description: Output an integer table as a string.  Written by
@@ -1410,6 +2235,10 @@ class CEmit
 	    }
 
 	  m_outstream.println("\t\twhile (true) {");
+	  if (m_spec.m_direct_code)
+	    {
+	      emit_direct_runs();
+	    }
 
 	  m_outstream.println("\t\t\tif (yy_initial && yy_at_bol) "+
 			                 "yy_lookahead = YY_BOL;");
@@ -1417,8 +2246,21 @@ class CEmit
 	  m_outstream.println("\t\t\tyy_next_state = YY_F;");
 	  /*m_outstream.println("\t\t\t\tyy_next_state = "
 				 + "yy_next(yy_state,yy_lookahead);");*/
-	  m_outstream.println("\t\t\tyy_next_state = "
- 	   + "yy_nxt[yy_rmap[yy_state]][yy_cmap[yy_lookahead]];");
+	  if (m_spec.m_direct_code)
+	    {
+	      m_outstream.println("\t\t\tyy_next_state = "
+		+ "yy_step(yy_state, yy_cmap[yy_lookahead]);");
+	    }
+	  else if (m_spec.m_flat_table)
+	    {
+	      m_outstream.println("\t\t\tyy_next_state = "
+		+ "yy_trans[yy_state * YY_NCLS + yy_cmap[yy_lookahead]];");
+	    }
+	  else
+	    {
+	      m_outstream.println("\t\t\tyy_next_state = "
+		+ "yy_nxt[yy_rmap[yy_state]][yy_cmap[yy_lookahead]];");
+	    }
 
 	  if (NOT_EDBG)
 	    {
@@ -1464,11 +2306,22 @@ class CEmit
 	  m_outstream.println("\t\t\t}");
 
 	  m_outstream.println("\t\t\tif (YY_F != yy_next_state) {");
-	  m_outstream.println("\t\t\t\tyy_state = yy_next_state;");
-     	  m_outstream.println("\t\t\t\tyy_initial = false;");
-     	  /*m_outstream.println("\t\t\t\tyy_this_accept = yy_accept(yy_state);");*/
-	  m_outstream.println("\t\t\t\tyy_this_accept = yy_acpt[yy_state];");
-	  m_outstream.println("\t\t\t\tif (YY_NOT_ACCEPT != yy_this_accept) {");
+	  if (m_spec.m_flat_table || m_spec.m_direct_code)
+	    {
+	      /* The low bit of a %flat entry or yy_step() result says
+		 the state accepts. */
+	      m_outstream.println("\t\t\t\tyy_state = yy_next_state >> 1;");
+	      m_outstream.println("\t\t\t\tyy_initial = false;");
+	      m_outstream.println("\t\t\t\tif (0 != (yy_next_state & 1)) {");
+	    }
+	  else
+	    {
+	      m_outstream.println("\t\t\t\tyy_state = yy_next_state;");
+	      m_outstream.println("\t\t\t\tyy_initial = false;");
+	      /*m_outstream.println("\t\t\t\tyy_this_accept = yy_accept(yy_state);");*/
+	      m_outstream.println("\t\t\t\tyy_this_accept = yy_acpt[yy_state];");
+	      m_outstream.println("\t\t\t\tif (YY_NOT_ACCEPT != yy_this_accept) {");
+	    }
 	  m_outstream.println("\t\t\t\t\tyy_last_accept_state = yy_state;");
 	  m_outstream.println("\t\t\t\t\tyy_mark_end();");
 	  m_outstream.println("\t\t\t\t}");
@@ -1495,6 +2348,14 @@ class CEmit
 	  m_outstream.println("\t\t\t\t\t\tyy_last_accept_state = yy_state;");
 	  m_outstream.println("\t\t\t\t\t}");*/
 
+	  if (m_spec.m_byte_input)
+	    {
+	      /* Say why when it is a byte no rule can match. */
+	      m_outstream.println("\t\t\t\t\tif (0x80 <= yy_lookahead && yy_lookahead < YY_BOL) {");
+	      m_outstream.println("\t\t\t\t\t\tthrow (new Error(\"Lexical Error: "
+				  + "Non-ASCII input byte in %byte scanner.\"));");
+	      m_outstream.println("\t\t\t\t\t}");
+	    }
 	  m_outstream.println("\t\t\t\t\tthrow (new Error(\"Lexical Error: Unmatched Input.\"));");
 	  m_outstream.println("\t\t\t\t}");
 
@@ -1599,42 +2460,275 @@ class CEmit
       {
 	if (CUtility.DEBUG)
 	  {
-	    CUtility.ASSERT(null != m_spec);
-	    CUtility.ASSERT(null != m_outstream);
+	    CUtility.ASSERT(null != m_spec);
+	    CUtility.ASSERT(null != m_outstream);
+	  }
+
+	m_outstream.println("}");
+      }
+}
+
+/***************************************************************
+  Class: CBunch
+  **************************************************************/
+class CBunch
+{
+  /***************************************************************
+    Member Variables
+    **************************************************************/
+  Vector m_nfa_set; /* Vector of CNfa states in dfa state. */
+  DenseBitSet m_nfa_bit; /* BitSet representation of CNfa labels. */
+  CAccept m_accept; /* Accepting actions, or null if nonaccepting state. */
+  int m_anchor; /* Anchors on regular expression. */
+  int m_accept_index; /* CNfa index corresponding to accepting actions. */
+
+  /***************************************************************
+    Function: CBunch
+    Description: Constructor.
+    **************************************************************/
+  CBunch
+    (
+     )
+      {
+	m_nfa_set = null;
+	m_nfa_bit = null;
+	m_accept = null;
+	m_anchor = CSpec.NONE;
+	m_accept_index = -1;
+      }
+}
+
+/***************************************************************
+  Class: CKeywords
+  Description: Minimal perfect hash for the %keyword table, by
+  hash and displace.  A keyword's base hash h is taken from its
+  first and last characters and its length when those tell all
+  the keywords apart, from every character otherwise.  Its slot
+  is mix(h ^ m_disp[bucket(h)]), scaled to 0..n-1: buckets are placed
+  largest first, each with the first displacement that sends its
+  keywords to distinct free slots.  No displacement separates two
+  keywords with the same h (as "Aa" and "BB" for String.hashCode()),
+  so the full hash takes its multiplier m_mult as a seed: 31 first,
+  then the next odd numbers until the keywords are placed.  The
+  generated yykeyword() computes the same function, so it must
+  stay in step with this.
+  **************************************************************/
+class CKeywords
+{
+  /***************************************************************
+    Member Variables
+    **************************************************************/
+  int m_slot[]; /* Keyword index in each of the n slots. */
+  int m_disp[]; /* Displacement for each bucket. */
+  boolean m_ends_only; /* Base hash uses first, last and length. */
+  int m_mult; /* Multiplier of the full base hash. */
+  int m_min_length; /* Length of the shortest keyword. */
+  int m_max_length; /* Length of the longest keyword. */
+
+  /***************************************************************
+    Constants
+    **************************************************************/
+  static final int MIX = 0x9E3779B1; /* Multiplier in the slot mix. */
+  static final int BUCKET_MIX = 0x85EBCA6B; /* And in the bucket mix. */
+  static final int MAX_DISP = 1 << 16; /* Displacements tried per bucket. */
+  static final int MAX_SEEDS = 1 << 10; /* Multipliers tried. */
+
+  /***************************************************************
+    Function: CKeywords
+    Description: Constructor; builds the hash for the keywords
+    (Strings, no two alike).
+    **************************************************************/
+  CKeywords
+    (
+     Vector keywords
+     )
+      {
+	int n = keywords.size();
+	int i;
+
+	m_min_length = Integer.MAX_VALUE;
+	m_max_length = 0;
+	for (i = 0; i < n; ++i)
+	  {
+	    int len = ((String) keywords.elementAt(i)).length();
+	    m_min_length = Math.min(m_min_length, len);
+	    m_max_length = Math.max(m_max_length, len);
+	  }
+
+	int h[] = new int[n];
+	m_mult = 31;
+	m_ends_only = 0 < m_min_length;
+	if (m_ends_only)
+	  {
+	    m_ends_only = hash_all(keywords, h) && place(h);
+	  }
+	for (int seed = 0; false == m_ends_only; ++seed)
+	  {
+	    if (MAX_SEEDS == seed)
+	      {
+		CError.impos("Cannot build a perfect hash for the keywords.");
+		throw new Error("Keyword table.");
+	      }
+	    m_mult = 31 + 2 * seed;
+	    if (hash_all(keywords, h) && place(h))
+	      {
+		break;
+	      }
+	  }
+      }
+
+  /***************************************************************
+    Function: hash_all
+    Description: Fills h[] with the base hash of each keyword;
+    false if two of them are alike.
+    **************************************************************/
+  private boolean hash_all
+    (
+     Vector keywords,
+     int h[]
+     )
+      {
+	Hashtable seen = new Hashtable();
+	for (int i = 0; i < h.length; ++i)
+	  {
+	    h[i] = hash((String) keywords.elementAt(i), m_ends_only, m_mult);
+	    if (null != seen.put(Integer.valueOf(h[i]), keywords.elementAt(i)))
+	      {
+		return false;
+	      }
+	  }
+	return true;
+      }
+
+  /***************************************************************
+    Function: place
+    Description: Fills m_slot[] and m_disp[] for the base hashes
+    h[]; false if some bucket has no displacement that fits.
+    **************************************************************/
+  private boolean place
+    (
+     int h[]
+     )
+      {
+	int n = h.length;
+	int i;
+
+	/* Sort keyword indices into buckets. */
+	m_disp = new int[n];
+	Vector buckets[] = new Vector[n];
+	for (i = 0; i < n; ++i)
+	  {
+	    int b = bucket(h[i], n);
+	    if (null == buckets[b])
+	      {
+		buckets[b] = new Vector();
+	      }
+	    buckets[b].addElement(Integer.valueOf(i));
+	  }
+	Integer order[] = new Integer[n];
+	for (i = 0; i < n; ++i)
+	  {
+	    order[i] = Integer.valueOf(i);
 	  }
+	final Vector sizes[] = buckets;
+	java.util.Arrays.sort(order, new java.util.Comparator() {
+	    public int compare(Object a, Object b) {
+	      return size(sizes[((Integer) b).intValue()])
+		- size(sizes[((Integer) a).intValue()]);
+	    }
+	  });
 
-	m_outstream.println("}");
+	/* Place the largest buckets first, while slots are free. */
+	m_slot = new int[n];
+	java.util.Arrays.fill(m_slot, -1);
+	int taken[] = new int[n];
+	for (i = 0; i < n; ++i)
+	  {
+	    int b = order[i].intValue();
+	    if (0 == size(buckets[b]))
+	      {
+		break;
+	      }
+	    int d;
+	    for (d = 0; d < MAX_DISP; ++d)
+	      {
+		if (fits(buckets[b], h, d, taken))
+		  {
+		    break;
+		  }
+	      }
+	    if (MAX_DISP == d)
+	      {
+		return false;
+	      }
+	    m_disp[b] = d;
+	    for (int j = 0; j < buckets[b].size(); ++j)
+	      {
+		int k = ((Integer) buckets[b].elementAt(j)).intValue();
+		m_slot[slot(h[k], d, n)] = k;
+	      }
+	  }
+	return true;
       }
-}
-
-/***************************************************************
-  Class: CBunch
-  **************************************************************/
-class CBunch
-{
-  /***************************************************************
-    Member Variables
-    **************************************************************/
-  Vector m_nfa_set; /* Vector of CNfa states in dfa state. */
-  SparseBitSet m_nfa_bit; /* BitSet representation of CNfa labels. */
-  CAccept m_accept; /* Accepting actions, or null if nonaccepting state. */
-  int m_anchor; /* Anchors on regular expression. */
-  int m_accept_index; /* CNfa index corresponding to accepting actions. */
 
   /***************************************************************
-    Function: CBunch
-    Description: Constructor.
+    Function: fits
+    Description: True if displacement d sends every keyword in
+    the bucket to a distinct free slot.  Marks taken[] with d+1
+    for the slots it tries, so no clearing is needed.
     **************************************************************/
-  CBunch
+  private boolean fits
     (
+     Vector bucket,
+     int h[],
+     int d,
+     int taken[]
      )
       {
-	m_nfa_set = null;
-	m_nfa_bit = null;
-	m_accept = null;
-	m_anchor = CSpec.NONE;
-	m_accept_index = -1;
+	int n = m_slot.length;
+	for (int j = 0; j < bucket.size(); ++j)
+	  {
+	    int s = slot(h[((Integer) bucket.elementAt(j)).intValue()], d, n);
+	    if (-1 != m_slot[s] || d + 1 == taken[s])
+	      {
+		return false;
+	      }
+	    taken[s] = d + 1;
+	  }
+	return true;
       }
+
+  private static int size(Vector v)
+    {
+      return null == v ? 0 : v.size();
+    }
+
+  /* A mixed hash scaled to 0..n-1 with a multiply and a shift,
+     which costs the generated code less than a division. */
+  static int bucket(int h, int n)
+    {
+      return (int) (((h * BUCKET_MIX & 0xffffffffL) * n) >>> 32);
+    }
+
+  static int slot(int h, int d, int n)
+    {
+      return (int) ((((h ^ d) * MIX & 0xffffffffL) * n) >>> 32);
+    }
+
+  static int hash(String word, boolean ends_only, int mult)
+    {
+      int len = word.length();
+      if (ends_only)
+	{
+	  return (word.charAt(0) * 31 + word.charAt(len - 1)) * 31 + len;
+	}
+      int h = len;
+      for (int i = 0; i < len; ++i)
+	{
+	  h = h * mult + word.charAt(i);
+	}
+      return h;
+    }
 }
 
 /***************************************************************
@@ -2201,6 +3295,7 @@ class CMakeNfa
 			  || m_lexGen.CCL_START == m_spec.m_current_token
 			  || (m_spec.m_ignorecase && isAlphaL)))
 	      {
+		check_byte(m_spec.m_lexeme);
 		start.m_edge = m_spec.m_lexeme;
 		m_lexGen.advance();
 	      }
@@ -2223,6 +3318,7 @@ class CMakeNfa
 		    // CSA: exclude BOL and EOF from character classes
 		    start.m_set.add(m_spec.BOL);
 		    start.m_set.add(m_spec.EOF);
+		    exclude_bytes(start.m_set);
 		    start.m_set.complement();
 		  }
 		else
@@ -2235,6 +3331,7 @@ class CMakeNfa
 			// CSA: exclude BOL and EOF from character classes
 			start.m_set.add(m_spec.BOL);
 			start.m_set.add(m_spec.EOF);
+			exclude_bytes(start.m_set);
 			start.m_set.complement();
 		      }
 		    if (false == (m_lexGen.CCL_END == m_spec.m_current_token))
@@ -2290,6 +3387,7 @@ class CMakeNfa
 		      set.add('-');
 		      break;
 		    }
+		  check_byte(m_spec.m_lexeme);
 		  for ( ; first <= m_spec.m_lexeme; ++first)
 		    {
 		      if (m_spec.m_ignorecase) 
@@ -2301,6 +3399,7 @@ class CMakeNfa
 	      else
 		{
 		  first = m_spec.m_lexeme;
+		  check_byte(first);
 		  if (m_spec.m_ignorecase)
 		    set.addncase(m_spec.m_lexeme);
 		  else
@@ -2315,6 +3414,43 @@ class CMakeNfa
 	    CUtility.leave("dodash",m_spec.m_lexeme,m_spec.m_current_token);
 	  }
       }
+
+  /***************************************************************
+    Function: check_byte
+    Description: A %byte scanner matches ASCII only, so a rule
+    may not name a character above 127.
+    **************************************************************/
+  private void check_byte
+    (
+     int c
+     )
+      {
+	if (m_spec.m_byte_input && c > CUtility.MAX_SEVEN_BIT)
+	  {
+	    CError.parse_error(CError.E_BYTE,m_input.m_line_number);
+	  }
+      }
+
+  /***************************************************************
+    Function: exclude_bytes
+    Description: Adds the bytes above 127 to a set that is about
+    to be complemented, so that in a %byte scanner "." and [^...]
+    match ASCII only.  Non-ASCII input then matches no rule.
+    **************************************************************/
+  private void exclude_bytes
+    (
+     CSet set
+     )
+      {
+	if (m_spec.m_byte_input)
+	  {
+	    for (int c = CUtility.MAX_SEVEN_BIT + 1; 
+		 c <= CUtility.MAX_EIGHT_BIT; ++c)
+	      {
+		set.add(c);
+	      }
+	  }
+      }
 }
 
 /**
@@ -2858,6 +3994,15 @@ class CMinimize
 	int group_size;
 	boolean added;
 
+	if (m_spec.m_hopcroft)
+	  {
+	    hopcroft();
+	    number_groups();
+	    System.out.println(m_group.size() + " states after removal of redundant states.");
+	    fix_dtrans();
+	    return;
+	  }
+
 	init_groups();
 
 	group_count = m_group.size();
@@ -2954,9 +4099,240 @@ class CMinimize
 	    pgroups();
 	  }
 
+	number_groups();
 	fix_dtrans();
       }
 
+  /***************************************************************
+    Function: number_groups
+    Description: Renumbers the groups in the order of their
+    lowest states, each group's states in ascending order.  The
+    groups then no longer depend on the order in which they were
+    split, so minimize() and hopcroft() number them alike.
+    **************************************************************/
+  private void number_groups
+    (
+     )
+      {
+	int size = m_spec.m_dtrans_vector.size();
+	int number[] = new int[size + 1];
+	int i;
+
+	for (i = 0; i <= size; ++i)
+	  {
+	    number[i] = -1;
+	  }
+
+	m_group = new Vector();
+	for (i = 0; i < size; ++i)
+	  {
+	    int group = m_ingroup[i];
+	    if (-1 == number[group])
+	      {
+		number[group] = m_group.size();
+		m_group.addElement(new Vector());
+	      }
+	    ((Vector) m_group.elementAt(number[group]))
+	      .addElement(m_spec.m_dtrans_vector.elementAt(i));
+	    m_ingroup[i] = number[group];
+	  }
+      }
+
+  /***************************************************************
+    Function: hopcroft
+    Description: Partitions the states for %hopcroft in
+    O(n k log n): Hopcroft's refinement on int arrays, with CDTrans.F
+    as one more state n.  The states of a block are a range of
+    elems[], so a block splits by swapping the states that have
+    a transition into the splitter to its front.  The smaller
+    half becomes the new block and goes on the worklist.  The
+    initial blocks are those of init_groups(), states with the
+    same accepting action, plus one for F.  Leaves the partition
+    in m_ingroup for number_groups().
+    **************************************************************/
+  private void hopcroft
+    (
+     )
+      {
+	int n = m_spec.m_dtrans_vector.size();
+	int ncols = m_spec.m_dtrans_ncols;
+	int nstates = n + 1;
+	int s;
+	int c;
+	int i;
+	int b;
+
+	/* Predecessors on each column: those of t on c are
+	   preds[pstart[c * nstates + t] .. pstart[c * nstates + t + 1]). */
+	int pstart[] = new int[ncols * nstates + 1];
+	int preds[] = new int[ncols * nstates];
+	int delta[] = new int[ncols * nstates];
+	for (s = 0; s < nstates; ++s)
+	  {
+	    CDTrans dtrans = s == n ? null
+	      : (CDTrans) m_spec.m_dtrans_vector.elementAt(s);
+	    for (c = 0; c < ncols; ++c)
+	      {
+		int t = null == dtrans || CDTrans.F == dtrans.m_dtrans[c]
+		  ? n : dtrans.m_dtrans[c];
+		delta[s * ncols + c] = c * nstates + t;
+		++pstart[c * nstates + t + 1];
+	      }
+	  }
+	for (i = 0; i < ncols * nstates; ++i)
+	  {
+	    pstart[i + 1] += pstart[i];
+	  }
+	int fill[] = new int[ncols * nstates];
+	System.arraycopy(pstart, 0, fill, 0, fill.length);
+	for (s = 0; s < nstates; ++s)
+	  {
+	    for (c = 0; c < ncols; ++c)
+	      {
+		preds[fill[delta[s * ncols + c]]++] = s;
+	      }
+	  }
+	fill = null;
+	delta = null;
+
+	/* Initial blocks. */
+	int block[] = new int[nstates];
+	int nblocks = 0;
+	int nonaccepting = -1;
+	Hashtable accepts = new Hashtable();
+	for (s = 0; s < n; ++s)
+	  {
+	    CAccept accept = ((CDTrans) m_spec.m_dtrans_vector.elementAt(s)).m_accept;
+	    if (null == accept)
+	      {
+		if (-1 == nonaccepting)
+		  {
+		    nonaccepting = nblocks++;
+		  }
+		block[s] = nonaccepting;
+	      }
+	    else
+	      {
+		Integer id = (Integer) accepts.get(accept);
+		if (null == id)
+		  {
+		    id = Integer.valueOf(nblocks++);
+		    accepts.put(accept, id);
+		  }
+		block[s] = id.intValue();
+	      }
+	  }
+	block[n] = nblocks++;
+
+	int elems[] = new int[nstates];
+	int loc[] = new int[nstates];
+	int first[] = new int[nstates];
+	int end[] = new int[nstates];
+	int marked[] = new int[nstates];
+	for (s = 0; s < nstates; ++s)
+	  {
+	    ++end[block[s]];
+	  }
+	for (b = 0, i = 0; b < nblocks; ++b)
+	  {
+	    first[b] = i;
+	    i += end[b];
+	    end[b] = first[b];
+	  }
+	for (s = 0; s < nstates; ++s)
+	  {
+	    loc[s] = end[block[s]]++;
+	    elems[loc[s]] = s;
+	  }
+
+	/* Every initial block is a splitter. */
+	int work[] = new int[nstates];
+	int nwork = 0;
+	for (b = 0; b < nblocks; ++b)
+	  {
+	    work[nwork++] = b;
+	  }
+
+	int splitter[] = new int[nstates];
+	int x[] = new int[nstates];
+	int touched[] = new int[nstates];
+	while (0 < nwork)
+	  {
+	    int a = work[--nwork];
+
+	    /* The splitter as it is now, though it may split below. */
+	    int nsplitter = end[a] - first[a];
+	    System.arraycopy(elems, first[a], splitter, 0, nsplitter);
+
+	    for (c = 0; c < ncols; ++c)
+	      {
+		int nx = 0;
+		for (i = 0; i < nsplitter; ++i)
+		  {
+		    int p = c * nstates + splitter[i];
+		    for (int j = pstart[p]; j < pstart[p + 1]; ++j)
+		      {
+			x[nx++] = preds[j];
+		      }
+		  }
+
+		/* Move the predecessors to the front of their blocks. */
+		int ntouched = 0;
+		for (i = 0; i < nx; ++i)
+		  {
+		    s = x[i];
+		    b = block[s];
+		    if (0 == marked[b])
+		      {
+			touched[ntouched++] = b;
+		      }
+		    int to = first[b] + marked[b]++;
+		    int other = elems[to];
+		    elems[loc[s]] = other;
+		    loc[other] = loc[s];
+		    elems[to] = s;
+		    loc[s] = to;
+		  }
+
+		for (i = 0; i < ntouched; ++i)
+		  {
+		    b = touched[i];
+		    int mid = first[b] + marked[b];
+		    marked[b] = 0;
+		    if (mid == end[b])
+		      {
+			continue;
+		      }
+
+		    int nb = nblocks++;
+		    if (mid - first[b] <= end[b] - mid)
+		      {
+			first[nb] = first[b];
+			end[nb] = mid;
+			first[b] = mid;
+		      }
+		    else
+		      {
+			first[nb] = mid;
+			end[nb] = end[b];
+			end[b] = mid;
+		      }
+		    for (int j = first[nb]; j < end[nb]; ++j)
+		      {
+			block[elems[j]] = nb;
+		      }
+
+		    /* Whether or not b is still to be split by,
+		       the smaller half is enough. */
+		    work[nwork++] = nb;
+		  }
+	      }
+	  }
+
+	m_ingroup = new int[n];
+	System.arraycopy(block, 0, m_ingroup, 0, n);
+      }
+
   /***************************************************************
     Function: init_groups
     Description:
@@ -3117,6 +4493,7 @@ class CNfa2Dfa
   private CSpec m_spec;
   private int m_unmarked_dfa;
   private CLexGen m_lexGen;
+  private CNfa m_nfa[]; /* NFA states by label. */
 
   /***************************************************************
     Constants
@@ -3146,6 +4523,8 @@ class CNfa2Dfa
 	m_lexGen = lexGen;
 	m_spec = spec;
 	m_unmarked_dfa = 0;
+	m_nfa = new CNfa[m_spec.m_nfa_states.size()];
+	m_spec.m_nfa_states.copyInto(m_nfa);
       }
 
   /***************************************************************
@@ -3159,6 +4538,7 @@ class CNfa2Dfa
 	m_lexGen = null;
 	m_spec = null;
 	m_unmarked_dfa = 0;
+	m_nfa = null;
       }
 
   /***************************************************************
@@ -3207,6 +4587,7 @@ class CNfa2Dfa
 	CNfa nfa;
 	int istate;
 	int nstates;
+	java.util.concurrent.ExecutorService pool = null;
 	
 	System.out.print("Working on DFA states.");
 
@@ -3214,6 +4595,20 @@ class CNfa2Dfa
 	bunch = new CBunch();
 	m_unmarked_dfa = 0;
 
+	if (0 < m_spec.m_dfa_threads)
+	  {
+	    pool = java.util.concurrent.Executors.newFixedThreadPool
+	      (m_spec.m_dfa_threads,
+	       new java.util.concurrent.ThreadFactory() {
+		 public Thread newThread(Runnable r) {
+		   Thread t = new Thread(r, "JLex DFA");
+		   t.setDaemon(true);
+		   return t;
+		 }
+	       });
+	    m_spec.m_dfa_sets = new java.util.concurrent.ConcurrentHashMap();
+	  }
+
 	/* Allocate mapping array. */
 	nstates = m_spec.m_state_rules.length;
 	m_spec.m_state_dtrans = new int[nstates];
@@ -3232,10 +4627,10 @@ class CNfa2Dfa
 	    */
 		
 	    /* Create start state and initialize fields. */
+	    /* e_closure() puts the set in order. */
 	    bunch.m_nfa_set = (Vector) m_spec.m_state_rules[istate].clone();
-	    sortStates(bunch.m_nfa_set);
 	    
-	    bunch.m_nfa_bit = new SparseBitSet();
+	    bunch.m_nfa_bit = new DenseBitSet(m_nfa.length);
 	    
 	    /* Initialize bit set. */
 	    size = bunch.m_nfa_set.size();
@@ -3254,6 +4649,12 @@ class CNfa2Dfa
 	    
 	    m_spec.m_state_dtrans[istate] = m_spec.m_dtrans_vector.size();
 
+	    if (null != pool)
+	      {
+		make_dtrans_parallel(pool);
+		continue;
+	      }
+
 	    /* Main loop of CDTrans creation. */
 	    while (null != (dfa = get_unmarked()))
 	      {
@@ -3308,28 +4709,174 @@ class CNfa2Dfa
 			
 			if (NOT_IN_DSTATES == nextstate)
 			  {
-			    nextstate = add_to_dstates(bunch);
+			    nextstate = add_to_dstates(bunch);
+			  }
+		      }
+		    
+		    if (CUtility.DEBUG)
+		      {
+			CUtility.ASSERT(nextstate < m_spec.m_dfa_states.size());
+		      }
+		    
+		    dtrans.m_dtrans[i] = nextstate;
+		  }
+		
+		if (CUtility.DEBUG)
+		  {
+		    CUtility.ASSERT(m_spec.m_dtrans_vector.size() == dfa.m_label);
+		  }
+		
+		m_spec.m_dtrans_vector.addElement(dtrans);
+	      }
+	  }
+
+	if (null != pool)
+	  {
+	    pool.shutdown();
+	  }
+	System.out.println();
+      }
+
+  /***************************************************************
+    Function: make_dtrans_parallel
+    Description: The main loop of make_dtrans() for %parallel,
+    one breadth-first level of unmarked DFA states at a time.
+    The moves and closures of a level, which only read the NFA,
+    are worked out on the pool, each task taking a run of states
+    and resolving targets that are already DFA states through
+    the concurrent m_dfa_sets.  The new sets are then numbered
+    on this thread in the order the serial loop would reach
+    them, state by state and column by column, so the DFA and
+    its numbering are exactly those of the serial construction.
+    **************************************************************/
+  private void make_dtrans_parallel
+    (
+     java.util.concurrent.ExecutorService pool
+     )
+      {
+	while (m_unmarked_dfa < m_spec.m_dfa_states.size())
+	  {
+	    final int from = m_unmarked_dfa;
+	    final int to = m_spec.m_dfa_states.size();
+	    final int next[][] = new int[to - from][];
+	    final CBunch sets[][] = new CBunch[to - from][];
+	    int chunk = Math.max(1, (to - from) / (4 * m_spec.m_dfa_threads));
+	    Vector tasks = new Vector();
+
+	    for (int start = from; start < to; start += chunk)
+	      {
+		final int lo = start;
+		final int hi = Math.min(to, start + chunk);
+		tasks.addElement(pool.submit(new Runnable() {
+		    public void run() {
+		      for (int d = lo; d < hi; ++d)
+			{
+			  move_all((CDfa) m_spec.m_dfa_states.elementAt(d),
+				   next, sets, d - from);
+			}
+		    }
+		  }));
+	      }
+	    for (int t = 0; t < tasks.size(); ++t)
+	      {
+		try
+		  {
+		    ((java.util.concurrent.Future) tasks.elementAt(t)).get();
+		  }
+		catch (InterruptedException e)
+		  {
+		    Thread.currentThread().interrupt();
+		    throw new Error("Interrupted while building the DFA.");
+		  }
+		catch (java.util.concurrent.ExecutionException e)
+		  {
+		    if (e.getCause() instanceof Error)
+		      {
+			throw (Error) e.getCause();
+		      }
+		    throw new Error(e.getCause().toString());
+		  }
+	      }
+
+	    for (int d = from; d < to; ++d)
+	      {
+		System.out.print(".");
+		System.out.flush();
+
+		CDfa dfa = (CDfa) m_spec.m_dfa_states.elementAt(d);
+		dfa.m_mark = true;
+
+		CDTrans dtrans = new CDTrans(m_spec.m_dtrans_vector.size(),m_spec);
+		dtrans.m_accept = dfa.m_accept;
+		dtrans.m_anchor = dfa.m_anchor;
+
+		for (int i = 0; i < m_spec.m_dtrans_ncols; ++i)
+		  {
+		    int nextstate = next[d - from][i];
+		    if (null != sets[d - from][i])
+		      {
+			/* New when the level began: maybe added since for
+			   an earlier state of the level. */
+			nextstate = in_dstates(sets[d - from][i]);
+			if (NOT_IN_DSTATES == nextstate)
+			  {
+			    nextstate = add_to_dstates(sets[d - from][i]);
 			  }
 		      }
-		    
-		    if (CUtility.DEBUG)
-		      {
-			CUtility.ASSERT(nextstate < m_spec.m_dfa_states.size());
-		      }
-		    
 		    dtrans.m_dtrans[i] = nextstate;
 		  }
-		
+
 		if (CUtility.DEBUG)
 		  {
 		    CUtility.ASSERT(m_spec.m_dtrans_vector.size() == dfa.m_label);
 		  }
-		
+
 		m_spec.m_dtrans_vector.addElement(dtrans);
 	      }
+	    m_unmarked_dfa = to;
 	  }
+      }
 
-	System.out.println();
+  /***************************************************************
+    Function: move_all
+    Description: Works out the transitions of one DFA state on
+    every column for make_dtrans_parallel(): next[k][i] is the
+    target state or CDTrans.F, unless the closed NFA set is not
+    a DFA state yet, in which case it is left in sets[k][i].
+    **************************************************************/
+  private void move_all
+    (
+     CDfa dfa,
+     int next[][],
+     CBunch sets[][],
+     int k
+     )
+      {
+	int ncols = m_spec.m_dtrans_ncols;
+	next[k] = new int[ncols];
+	sets[k] = new CBunch[ncols];
+
+	for (int i = 0; i < ncols; ++i)
+	  {
+	    CBunch bunch = new CBunch();
+	    move(dfa.m_nfa_set,dfa.m_nfa_bit,i,bunch);
+	    if (null == bunch.m_nfa_set)
+	      {
+		next[k][i] = CDTrans.F;
+		continue;
+	      }
+	    e_closure(bunch);
+
+	    CDfa target = (CDfa) m_spec.m_dfa_sets.get(bunch.m_nfa_bit);
+	    if (null != target)
+	      {
+		next[k][i] = target.m_label;
+	      }
+	    else
+	      {
+		sets[k][i] = bunch;
+	      }
+	  }
       }
 
   /***************************************************************
@@ -3445,13 +4992,8 @@ class CNfa2Dfa
 	      {
 		if (null != state.m_next)
 		  {
-		    if (false == bunch.m_nfa_set.contains(state.m_next))
+		    if (false == bunch.m_nfa_bit.get(state.m_next.m_label))
 		      {
-			if (CUtility.DEBUG)
-			  {
-			    CUtility.ASSERT(false == bunch.m_nfa_bit.get(state.m_next.m_label));
-			  }
-			
 			bunch.m_nfa_bit.set(state.m_next.m_label);
 			bunch.m_nfa_set.addElement(state.m_next);
 			nfa_stack.push(state.m_next);
@@ -3460,13 +5002,8 @@ class CNfa2Dfa
 
 		if (null != state.m_next2)
 		  {
-		    if (false == bunch.m_nfa_set.contains(state.m_next2))
+		    if (false == bunch.m_nfa_bit.get(state.m_next2.m_label))
 		      {
-			if (CUtility.DEBUG)
-			  {
-			    CUtility.ASSERT(false == bunch.m_nfa_bit.get(state.m_next2.m_label));
-			  }
-			
 			bunch.m_nfa_bit.set(state.m_next2.m_label);
 			bunch.m_nfa_set.addElement(state.m_next2);
 			nfa_stack.push(state.m_next2);
@@ -3475,9 +5012,13 @@ class CNfa2Dfa
 	      }
 	  }
 
-	if (null != bunch.m_nfa_set)
+	/* The set in order of label, as the bits have it. */
+	bunch.m_nfa_set.removeAllElements();
+	for (i = bunch.m_nfa_bit.nextSetBit(0);
+	     0 <= i;
+	     i = bunch.m_nfa_bit.nextSetBit(i + 1))
 	  {
-	    sortStates(bunch.m_nfa_set);
+	    bunch.m_nfa_set.addElement(m_nfa[i]);
 	  }
 
 	return;
@@ -3490,7 +5031,7 @@ class CNfa2Dfa
   void move
     (
      Vector nfa_set,
-     SparseBitSet nfa_bit,
+     DenseBitSet nfa_bit,
      int b,
      CBunch bunch
      )
@@ -3519,9 +5060,7 @@ class CNfa2Dfa
 		      }
 		    
 		    bunch.m_nfa_set = new Vector();
-		    /*bunch.m_nfa_bit 
-			= new SparseBitSet(m_spec.m_nfa_states.size());*/
-		    bunch.m_nfa_bit = new SparseBitSet();
+		    bunch.m_nfa_bit = new DenseBitSet(m_nfa.length);
 		  }
 
 		bunch.m_nfa_set.addElement(state.m_next);
@@ -3532,73 +5071,12 @@ class CNfa2Dfa
 	      }
 	  }
 	
-	if (null != bunch.m_nfa_set)
-	  {
-	    if (CUtility.DEBUG)
-	      {
-		CUtility.ASSERT(null != bunch.m_nfa_bit);
-	      }
-	    
-	    sortStates(bunch.m_nfa_set);
-	  }
-
-	return;
-      }
-
-  /***************************************************************
-    Function: sortStates
-    **************************************************************/
-  private void sortStates
-    (
-     Vector nfa_set
-     )
-      {
-	CNfa elem;
-	int begin;
-	int size;
-	int index;
-	int value;
-	int smallest_index;
-	int smallest_value;
-	CNfa begin_elem;
-
-	size = nfa_set.size();
-	for (begin = 0; begin < size; ++begin)
+	/* e_closure() puts the set in order. */
+	if (CUtility.DEBUG)
 	  {
-	    elem = (CNfa) nfa_set.elementAt(begin);
-	    smallest_value = elem.m_label;
-	    smallest_index = begin;
-
-	    for (index = begin + 1; index < size; ++index)
-	      {
-		elem = (CNfa) nfa_set.elementAt(index);
-		value = elem.m_label;
-
-		if (value < smallest_value)
-		  {
-		    smallest_index = index;
-		    smallest_value = value;
-		  }
-	      }
-
-	    begin_elem = (CNfa) nfa_set.elementAt(begin);
-	    elem = (CNfa) nfa_set.elementAt(smallest_index);
-	    nfa_set.setElementAt(elem,begin);
-	    nfa_set.setElementAt(begin_elem,smallest_index);
+	    CUtility.ASSERT((null == bunch.m_nfa_set) == (null == bunch.m_nfa_bit));
 	  }
 
-	if (CUtility.OLD_DEBUG)
-	  {
-	    System.out.print("NFA vector indices: ");  
-	    
-	    for (index = 0; index < size; ++index)
-	      {
-		elem = (CNfa) nfa_set.elementAt(index);
-		System.out.print(elem.m_label + " ");
-	      }
-	    System.out.println();
-	  }	
-
 	return;
       }
 
@@ -3675,7 +5153,7 @@ class CNfa2Dfa
 	
 	/* Initialize fields, including the mark field. */
 	dfa.m_nfa_set = (Vector) bunch.m_nfa_set.clone();
-	dfa.m_nfa_bit = (SparseBitSet) bunch.m_nfa_bit.clone();
+	dfa.m_nfa_bit = (DenseBitSet) bunch.m_nfa_bit.clone();
 	dfa.m_accept = bunch.m_accept;
 	dfa.m_anchor = bunch.m_anchor;
 	dfa.m_mark = false;
@@ -3901,7 +5379,7 @@ class CDfa
   CAccept m_accept;
   int m_anchor;
   Vector m_nfa_set;
-  SparseBitSet m_nfa_bit;
+  DenseBitSet m_nfa_bit;
   int m_label;
 
   /***************************************************************
@@ -4532,6 +6010,8 @@ class CError
   static final int E_DASH = 18;
   static final int E_ZERO = 19;
   static final int E_BADCTRL = 20;
+  static final int E_KEYWORD = 21;
+  static final int E_BYTE = 22;
   
   /********************************************************
     Constants
@@ -4562,6 +6042,9 @@ class CError
       "Zero-length regular expression.",
       "Illegal \\^C-style escape sequence (character following caret must\n"
         + "\tbe alphabetic).",
+      "Keyword declared twice or without a value.",
+      "Character above 127 in a %byte specification (%byte scanners\n"
+        + "\tmatch ASCII only).",
     };
   
   /********************************************************
@@ -4901,6 +6384,7 @@ class CLexGen
       
 	/* Initialize spec structure. */
 	m_spec = new CSpec(this);
+	m_spec.m_spec_dir = new java.io.File(filename).getAbsoluteFile().getParentFile();
 	
 	/* Nfa to dfa converter. */
 	m_nfa2dfa = new CNfa2Dfa();
@@ -4961,6 +6445,12 @@ class CLexGen
 	    CError.parse_error(CError.E_EOF,m_input.m_line_number);
 	  }
 
+	/* %direct leaves no transition table to flatten. */
+	if (m_spec.m_direct_code)
+	  {
+	    m_spec.m_flat_table = false;
+	  }
+
 	if (m_spec.m_verbose)
 	  {
 	    System.out.println("Processing third section -- lexical rules.");
@@ -5242,6 +6732,13 @@ class CLexGen
     '\0'
     };
 
+  private char m_hopcroft_dir[] = { 
+    '%', 'h', 'o',
+    'p', 'c', 'r',
+    'o', 'f', 't',
+    '\0'
+    };
+
   private char m_implements_dir[] = { 
     '%', 'i', 'm', 'p', 'l', 'e', 'm', 'e', 'n', 't', 's', 
     '\0'
@@ -5409,6 +6906,42 @@ class CLexGen
     'b', 'l', 'i', 
     'c', '\0'
     };
+
+  private char m_parallel_dir[] = { 
+    '%', 'p', 'a',
+    'r', 'a', 'l',
+    'l', 'e', 'l',
+    '\0'
+    };
+
+  private char m_byte_dir[] = { 
+    '%', 'b', 'y',
+    't', 'e', '\0'
+    };
+
+  private char m_direct_dir[] = { 
+    '%', 'd', 'i',
+    'r', 'e', 'c',
+    't', '\0'
+    };
+
+  private char m_flat_dir[] = { 
+    '%', 'f', 'l',
+    'a', 't', '\0'
+    };
+
+  private char m_keyword_dir[] = { 
+    '%', 'k', 'e',
+    'y', 'w', 'o',
+    'r', 'd', '\0'
+    };
+
+  private char m_tablefile_dir[] = { 
+    '%', 't', 'a',
+    'b', 'l', 'e',
+    'f', 'i', 'l',
+    'e', '\0'
+    };
   
   /***************************************************************
     Function: userDeclare
@@ -5497,6 +7030,30 @@ class CLexGen
 					 m_input.m_line_number);
 		      break;
 
+		    case 'b':
+		      if (0 == CUtility.charncmp(m_input.m_line,
+						 0,
+						 m_byte_dir,
+						 0,
+						 m_byte_dir.length - 1))
+			{
+			  /* Scan bytes; every byte value needs a column,
+			     though rules only match ASCII (see
+			     CMakeNfa.exclude_bytes()). */
+			  m_input.m_line_index = m_byte_dir.length;
+			  m_spec.m_byte_input = true;
+			  if (m_spec.m_dtrans_ncols < CUtility.MAX_EIGHT_BIT + 1)
+			    {
+			      m_spec.m_dtrans_ncols = CUtility.MAX_EIGHT_BIT + 1;
+			    }
+			  break;
+			}
+
+		      /* Bad directive. */
+		      CError.parse_error(CError.E_DIRECT,
+					 m_input.m_line_number);
+		      break;
+
 		    case 'c':
 		      if (0 == CUtility.charncmp(m_input.m_line,
 						 0,
@@ -5543,6 +7100,23 @@ class CLexGen
 					 m_input.m_line_number);
 		      break;
 		      
+		    case 'd':
+		      if (0 == CUtility.charncmp(m_input.m_line,
+						 0,
+						 m_direct_dir,
+						 0,
+						 m_direct_dir.length - 1))
+			{
+			  m_input.m_line_index = m_direct_dir.length;
+			  m_spec.m_direct_code = true;
+			  break;
+			}
+
+		      /* Bad directive. */
+		      CError.parse_error(CError.E_DIRECT,
+					 m_input.m_line_number);
+		      break;
+
 		    case 'e':
 		      if (0 == CUtility.charncmp(m_input.m_line,
 						 0,
@@ -5611,6 +7185,33 @@ class CLexGen
 			  m_spec.m_dtrans_ncols = CUtility.MAX_EIGHT_BIT + 1;
 			  break;
 			}
+		      else if (0 == CUtility.charncmp(m_input.m_line,
+						      0,
+						      m_flat_dir,
+						      0,
+						      m_flat_dir.length - 1))
+			{
+			  m_input.m_line_index = m_flat_dir.length;
+			  m_spec.m_flat_table = true;
+			  break;
+			}
+
+		      /* Bad directive. */
+		      CError.parse_error(CError.E_DIRECT,
+					 m_input.m_line_number);
+		      break;
+
+		    case 'h':
+		      if (0 == CUtility.charncmp(m_input.m_line,
+						 0,
+						 m_hopcroft_dir,
+						 0,
+						 m_hopcroft_dir.length - 1))
+			{
+			  m_input.m_line_index = m_hopcroft_dir.length;
+			  m_spec.m_hopcroft = true;
+			  break;
+			}
 
 		      /* Bad directive. */
 		      CError.parse_error(CError.E_DIRECT,
@@ -5693,6 +7294,23 @@ class CLexGen
 					 m_input.m_line_number);
 		      break;
 
+		    case 'k':
+		      if (0 == CUtility.charncmp(m_input.m_line,
+						 0,
+						 m_keyword_dir,
+						 0,
+						 m_keyword_dir.length - 1))
+			{
+			  m_input.m_line_index = m_keyword_dir.length;
+			  saveKeyword();
+			  break;
+			}
+
+		      /* Bad directive. */
+		      CError.parse_error(CError.E_DIRECT,
+					 m_input.m_line_number);
+		      break;
+
 		    case 'l':
 		      if (0 == CUtility.charncmp(m_input.m_line,
 						 0,
@@ -5741,6 +7359,16 @@ class CLexGen
 			  m_spec.m_public = true;
 			  break;
 			}
+		      else if (0 == CUtility.charncmp(m_input.m_line,
+						      0,
+						      m_parallel_dir,
+						      0,
+						      m_parallel_dir.length - 1))
+			{
+			  m_input.m_line_index = m_parallel_dir.length;
+			  saveParallel();
+			  break;
+			}
 
 		      /* Bad directive. */
 		      CError.parse_error(CError.E_DIRECT,
@@ -5777,6 +7405,16 @@ class CLexGen
 			  m_spec.m_type_name = getName();
 			  break;
 			}
+		      else if (0 == CUtility.charncmp(m_input.m_line,
+						      0,
+						      m_tablefile_dir,
+						      0,
+						      m_tablefile_dir.length - 1))
+			{
+			  m_input.m_line_index = m_tablefile_dir.length;
+			  m_spec.m_table_file = true;
+			  break;
+			}
 
 		      /* Undefined directive. */
 		      CError.parse_error(CError.E_DIRECT,
@@ -6565,6 +8203,74 @@ class CLexGen
 			    new String(m_input.m_line,start_def,count_def));
       }
 
+  /***************************************************************
+    Function: saveKeyword
+    Description: Takes a keyword declaration and adds it to the
+    keyword table in CSpec.  It should be of the form:
+    %keyword word value
+    where value is a Java int expression, returned by yykeyword()
+    when the matched text is exactly word.
+    **************************************************************/
+  private void saveKeyword
+    (
+     )
+      {
+	String decl = new String(getName()).trim();
+	int elem = 0;
+
+	while (elem < decl.length()
+	       && false == CUtility.isspace(decl.charAt(elem)))
+	  {
+	    ++elem;
+	  }
+
+	String word = decl.substring(0, elem);
+	String value = decl.substring(elem).trim();
+	if (0 == value.length() || m_spec.m_keywords.contains(word))
+	  {
+	    CError.parse_error(CError.E_KEYWORD,
+			       m_input.m_line_number);
+	  }
+
+	m_spec.m_keywords.addElement(word);
+	m_spec.m_keyword_values.addElement(value);
+      }
+
+  /***************************************************************
+    Function: saveParallel
+    Description: Reads the optional thread count of a %parallel
+    directive; without one, every available processor is used.
+    **************************************************************/
+  private void saveParallel
+    (
+     )
+      {
+	String count = new String(m_input.m_line,
+				  m_input.m_line_index,
+				  m_input.m_line_read - m_input.m_line_index).trim();
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	if (0 != count.length())
+	  {
+	    try
+	      {
+		threads = Integer.parseInt(count);
+	      }
+	    catch (NumberFormatException e)
+	      {
+		threads = 0;
+	      }
+	    if (1 > threads)
+	      {
+		CError.parse_error(CError.E_DIRECT,
+				   m_input.m_line_number);
+	      }
+	  }
+
+	m_input.m_line_index = m_input.m_line_read;
+	m_spec.m_dfa_threads = threads;
+      }
+
   /***************************************************************
     Function: saveStates
     Description: Takes state declaration and makes entries
@@ -7459,6 +9165,8 @@ final class SparseBitSet implements Cloneable {
     long bits[];
     /** Number of blocks currently in use. */
     int size;
+    /** Cached hashCode(), or 0 if not worked out since the last change. */
+    private int hash;
     /** log base 2 of BITS, for the identity: x/BITS == x >> LG_BITS */
     static final private int LG_BITS = 6;
     /** Number of bits in a block. */
@@ -7538,6 +9246,7 @@ final class SparseBitSet implements Cloneable {
 	if (idx >= size || offs[idx]!=bnum)
 	    new_block(idx, bnum);
 	bits[idx] |= (1L << (bit & BITS_M1) );
+	hash = 0;
     }
 
     /**
@@ -7550,6 +9259,7 @@ final class SparseBitSet implements Cloneable {
 	if (idx >= size || offs[idx]!=bnum)
 	    new_block(idx, bnum);
 	bits[idx] &= ~(1L << (bit & BITS_M1) );
+	hash = 0;
     }
 
     /**
@@ -7557,6 +9267,7 @@ final class SparseBitSet implements Cloneable {
      */
     public void clearAll() {
 	size = 0;
+	hash = 0;
     }
 
     /**
@@ -7651,16 +9362,26 @@ final class SparseBitSet implements Cloneable {
 	a.bits = nbits;
 	a.offs = noffs;
 	a.size = nsize;
+	a.hash = 0;
     }
 
     /**
-     * Gets the hashcode.
+     * Gets the hashcode, working it out only once for a set that
+     * does not change, such as a DFA state's NFA set, which is
+     * hashed on every lookup during subset construction.  Each
+     * block is weighted by an odd number, so the first block,
+     * which holds the lowest NFA states, counts too.
      */
     public int hashCode() {
-	long h = 1234;
-	for (int i=0; i<size; i++)
-	    h ^= bits[i] * offs[i];
-	return (int)((h >> 32) ^ h);
+	int h = hash;
+	if (h == 0) {
+	    long l = 1234;
+	    for (int i=0; i<size; i++)
+		l ^= bits[i] * (2 * offs[i] + 1);
+	    h = (int)((l >> 32) ^ l);
+	    hash = h;
+	}
+	return h;
     }
 
     /**
@@ -7814,6 +9535,161 @@ final class SparseBitSet implements Cloneable {
     }
 }
 
+/**
+ * A set of NFA state labels as an array of words.  The labels of an
+ * NFA are dense small integers, so unlike SparseBitSet there is no
+ * block search: get() and set() index the array directly, and
+ * equals(), hashCode() and nextSetBit(), which iterates without
+ * allocating, only walk the words from the lowest bit set to the
+ * highest.  words[0] holds labels from 64*base on; clone() keeps just
+ * that span, so the sets kept with DFA states stay small.
+ */
+final class DenseBitSet implements Cloneable {
+    /** Bits 64*(base+i) .. 64*(base+i)+63 of the set. */
+    private long words[];
+    /** Index of words[0] among all the words of the set. */
+    private int base;
+    /** words[lo .. hi) holds every bit set; lo >= hi if none is. */
+    private int lo, hi;
+    /** Cached hashCode(), or 0 if not worked out since the last change. */
+    private int hash;
+
+    /**
+     * Creates an empty set for labels below nbits.
+     */
+    public DenseBitSet(int nbits) {
+	words = new long[(nbits + 63) >> 6];
+	base = 0;
+	lo = words.length;
+	hi = 0;
+    }
+
+    /**
+     * Sets a bit, growing the set if it is out of range.
+     */
+    public void set(int bit) {
+	int i = (bit >> 6) - base;
+	if (i < 0 || i >= words.length) {
+	    int nbase = Math.min(base, bit >> 6);
+	    int nend = Math.max(base + words.length, (bit >> 6) + 1);
+	    long nwords[] = new long[nend - nbase];
+	    System.arraycopy(words, 0, nwords, base - nbase, words.length);
+	    lo += base - nbase;
+	    hi += base - nbase;
+	    words = nwords;
+	    base = nbase;
+	    i = (bit >> 6) - base;
+	}
+	words[i] |= 1L << bit;
+	if (i < lo) lo = i;
+	if (i >= hi) hi = i + 1;
+	hash = 0;
+    }
+
+    /**
+     * Gets a bit.
+     */
+    public boolean get(int bit) {
+	int i = (bit >> 6) - base;
+	return lo <= i && i < hi && 0 != (words[i] & (1L << bit));
+    }
+
+    /**
+     * The lowest bit set at or above from, or -1 if there is none.
+     * Iterate with for (b = s.nextSetBit(0); 0 <= b; b = s.nextSetBit(b+1)).
+     */
+    public int nextSetBit(int from) {
+	int i = (from >> 6) - base;
+	long w;
+	if (i < lo) {
+	    i = lo;
+	    if (i >= hi)
+		return -1;
+	    w = words[i];
+	} else {
+	    if (i >= hi)
+		return -1;
+	    w = words[i] & (-1L << from);
+	}
+	while (true) {
+	    if (0 != w)
+		return ((base + i) << 6) + Long.numberOfTrailingZeros(w);
+	    if (++i >= hi)
+		return -1;
+	    w = words[i];
+	}
+    }
+
+    /**
+     * Gets the hashcode, worked out once for a set that does not
+     * change.  Each word is weighted as in SparseBitSet.hashCode().
+     */
+    public int hashCode() {
+	int h = hash;
+	if (h == 0) {
+	    long l = 1234;
+	    for (int i=lo; i<hi; i++)
+		l ^= words[i] * (2 * (base + i) + 1);
+	    h = (int)((l >> 32) ^ l);
+	    hash = h;
+	}
+	return h;
+    }
+
+    /**
+     * Compares this set against the specified object, whatever
+     * the span of words either of them holds.
+     */
+    public boolean equals(Object obj) {
+	if (!(obj instanceof DenseBitSet))
+	    return false;
+	DenseBitSet set = (DenseBitSet) obj;
+	if (hash != 0 && set.hash != 0 && hash != set.hash)
+	    return false;
+	if (base + lo != set.base + set.lo || base + hi != set.base + set.hi)
+	    return lo >= hi && set.lo >= set.hi;
+	for (int i = lo, j = set.lo; i < hi; i++, j++)
+	    if (words[i] != set.words[j])
+		return false;
+	return true;
+    }
+
+    /**
+     * Clones the set, keeping only the words from its lowest bit
+     * set to its highest.
+     */
+    public Object clone() {
+	int n = Math.max(hi - lo, 0);
+	try {
+	    DenseBitSet set = (DenseBitSet) super.clone();
+	    set.words = new long[n];
+	    if (0 < n)
+		System.arraycopy(words, lo, set.words, 0, n);
+	    set.base = base + Math.min(lo, hi);
+	    set.lo = 0;
+	    set.hi = n;
+	    return set;
+	} catch (CloneNotSupportedException e) {
+	    // this shouldn't happen, since we are Cloneable
+	    throw new InternalError();
+	}
+    }
+
+    /**
+     * Converts the set to a String.
+     */
+    public String toString() {
+	StringBuffer sb = new StringBuffer();
+	sb.append('{');
+	for (int b = nextSetBit(0); 0 <= b; b = nextSetBit(b + 1)) {
+	    if (sb.length() > 1) sb.append(", ");
+	    sb.append(b);
+	}
+	sb.append('}');
+	return sb.toString();
+    }
+}
+
 /************************************************************************
   JLEX COPYRIGHT NOTICE, LICENSE AND DISCLAIMER.
   
@@ -33,6 +33,8 @@ import java.io.*;
  *   <dd> number of conflicts expected/allowed [default 0]
  *   <dt> -compact_red   
  *   <dd> compact tables by defaulting to most frequent reduce
+ *   <dt> -comb_tables
+ *   <dd> also emit tables as comb vectors, for constant time lookup
  *   <dt> -nowarn        
  *   <dd> don't warn about useless productions, etc.
  *   <dt> -nosummary     
@@ -231,6 +233,7 @@ public class Main {
 "    -nonterms      put non terminals in symbol constant class\n" + 
 "    -expect #      number of conflicts expected/allowed [default 0]\n" + 
 "    -compact_red   compact tables by defaulting to most frequent reduce\n" +
+"    -comb_tables   also emit tables as comb vectors for constant time lookup\n"+
 "    -nowarn        don't warn about useless productions, etc.\n" +
 "    -nosummary     don't print the usual summary of parse states, etc.\n" +
 "    -nopositions   don't propagate the left and right token position values\n" +
@@ -308,6 +311,7 @@ public class Main {
 	      }
 	    }
 	  else if (argv[i].equals("-compact_red"))  opt_compact_red = true;
+	  else if (argv[i].equals("-comb_tables"))  emit.comb_tables = true;
 	  else if (argv[i].equals("-nosummary"))    no_summary = true;
 	  else if (argv[i].equals("-nowarn"))       emit.nowarn = true;
 	  else if (argv[i].equals("-dump_states"))  opt_dump_states = true;
@@ -636,6 +640,12 @@ public class Main {
       else
 	System.err.println("  No code produced.");
 
+      /* table sizes */
+      if (output_produced && emit.comb_tables)
+	System.err.println("  Parse tables take about " + 
+	  emit.packed_table_bytes + " bytes as packed rows and " +
+	  emit.comb_table_bytes + " bytes as comb vectors.");
+
       if (opt_show_timing) show_times();
 
       System.err.println(
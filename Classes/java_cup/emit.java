@@ -168,6 +168,12 @@ public class emit {
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
 
+  /** Do we also emit the action and reduce-goto tables in row displacement
+   *  (comb vector) form, for constant time lookup in the parser? */
+  public static boolean comb_tables = false;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
   /** Count of the number on non-reduced productions found. */
   public static int not_reduced = 0;
 
@@ -203,6 +209,16 @@ public class emit {
   /** Time to produce the reduce-goto table. */
   public static long goto_table_time       = 0;
 
+  /* Table sizes used to produce the table report in main. */
+
+  /** Estimated heap size in bytes of the packed action and reduce-goto 
+   *  tables. */
+  public static long packed_table_bytes    = 0;
+
+  /** Estimated heap size in bytes of the comb vector forms of the action 
+   *  and reduce-goto tables (0 if they were not produced). */
+  public static long comb_table_bytes      = 0;
+
   /* frankf 6/18/96 */
   protected static boolean _lr_values;
 
@@ -545,6 +561,9 @@ public class emit {
       parse_action_row row;
       parse_action     act;
       int              red;
+      short[][]        packed = new short[act_tab.num_states()][];
+      short[]          entries;
+      int              num;
 
       long start_time = System.currentTimeMillis();
 
@@ -565,6 +584,8 @@ public class emit {
 	    row.default_reduce = -1;
 
 	  out.print("    /*" + i + "*/{");
+	  entries = new short[2*row.size() + 2];
+	  num = 0;
 
 	  /* do each column */
 	  for (int j = 0; j < row.size(); j++)
@@ -582,6 +603,9 @@ public class emit {
 		    {
 		      out.print(j + "," + 
 				(((shift_action)act).shift_to().index() + 1) + ",");
+		      entries[num++] = (short)j;
+		      entries[num++] = 
+			(short)(((shift_action)act).shift_to().index() + 1);
 		    }
 
 		  /* reduce actions get negated entries of production# + 1 */
@@ -590,7 +614,11 @@ public class emit {
 		      /* if its the default entry let it get defaulted out */
 		      red = ((reduce_action)act).reduce_with().index();
 		      if (red != row.default_reduce)
-		        out.print(j + "," + (-(red+1)) + ",");
+			{
+			  out.print(j + "," + (-(red+1)) + ",");
+			  entries[num++] = (short)j;
+			  entries[num++] = (short)(-(red+1));
+			}
 		    } else if (act.kind() == parse_action.NONASSOC)
 		      {
 			/* do nothing, since we just want a syntax error */
@@ -607,6 +635,11 @@ public class emit {
 	    out.println("-1," + (-(row.default_reduce+1)) + "},");
 	  else
 	    out.println("-1,0},");
+	  entries[num++] = -1;
+	  entries[num++] = (short)(row.default_reduce != -1 ? 
+				   -(row.default_reduce+1) : 0);
+	  packed[i] = new short[num];
+	  System.arraycopy(entries, 0, packed[i], 0, num);
 	}
 
       /* finish off the init of the table */
@@ -617,6 +650,12 @@ public class emit {
       out.println("  /** access to parse action table */");
       out.println("  public short[][] action_table() {return _action_table;}");
 
+      /* and the comb vector form if asked for */
+      packed_table_bytes += table_bytes(packed);
+      if (comb_tables)
+	emit_comb_table(out, "action", "parse action", packed, 
+			terminal.number());
+
       action_table_time = System.currentTimeMillis() - start_time;
     }
 
@@ -632,6 +671,9 @@ public class emit {
     {
       lalr_state       goto_st;
       parse_action     act;
+      short[][]        packed = new short[red_tab.num_states()][];
+      short[]          entries;
+      int              num;
 
       long start_time = System.currentTimeMillis();
 
@@ -643,6 +685,8 @@ public class emit {
       for (int i=0; i<red_tab.num_states(); i++)
 	{
 	  out.print("    /*" + i + "*/{");
+	  entries = new short[2*red_tab.under_state[i].size() + 2];
+	  num = 0;
 
 	  /* do each entry in the row */
 	  for (int j=0; j<red_tab.under_state[i].size(); j++)
@@ -655,11 +699,17 @@ public class emit {
 		{
 		  /* make entries for the index and the value */
 		  out.print(j + "," + goto_st.index() + ",");
+		  entries[num++] = (short)j;
+		  entries[num++] = (short)goto_st.index();
 		}
 	    }
 
 	  /* end row with default value */
 	  out.println("-1,-1},");
+	  entries[num++] = -1;
+	  entries[num++] = -1;
+	  packed[i] = new short[num];
+	  System.arraycopy(entries, 0, packed[i], 0, num);
 	}
 
       /* finish off the init of the table */
@@ -669,6 +719,12 @@ public class emit {
       out.println();
       out.println("  /** access to reduce_goto table */");
       out.println("  public short[][] reduce_table() {return _reduce_table;}");
+
+      /* and the comb vector form if asked for */
+      packed_table_bytes += table_bytes(packed);
+      if (comb_tables)
+	emit_comb_table(out, "reduce", "reduce_goto", packed, 
+			non_terminal.number());
       out.println();
 
       goto_table_time = System.currentTimeMillis() - start_time;
@@ -676,6 +732,157 @@ public class emit {
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
 
+  /** Pack the rows of a table (in the packed form of the action and
+   *  reduce-goto tables: index, value pairs ending with a -1 default entry)
+   *  into row displacement form, also known as comb vectors.  Rows are laid
+   *  over each other in one value vector, each at the first displacement
+   *  (base) where its entries fall on free slots, and a check vector 
+   *  records which row owns each slot.  The entry for row r and column c
+   *  is then value[base[r]+c] if check[base[r]+c] == r, and default[r] 
+   *  otherwise.  The vectors are padded so that base[r]+c is always in 
+   *  range.  Rows are placed with the fullest first, which packs tighter.
+   *
+   * @param  rows the table in packed form.
+   * @param  ncols the number of columns of the table.
+   * @return {base, check, value, default}, or null if the vectors would be
+   *         too long to index with a short.
+   */
+  protected static short[][] comb_pack(short[][] rows, int ncols)
+    {
+      int[]     base  = new int[rows.length];
+      int[]     check = new int[2*ncols + 2*rows.length];
+      int[]     order = new int[rows.length];
+      boolean[] free;
+      int       len = 0, b, i, j, k, r;
+
+      /* order the rows by decreasing number of entries */
+      Integer[] by_size = new Integer[rows.length];
+      for (i = 0; i < rows.length; i++) by_size[i] = Integer.valueOf(i);
+      final short[][] tab = rows;
+      java.util.Arrays.sort(by_size, new java.util.Comparator() {
+	public int compare(Object a, Object o) {
+	  return tab[((Integer)o).intValue()].length - 
+		 tab[((Integer)a).intValue()].length;
+	}
+      });
+      for (i = 0; i < rows.length; i++) order[i] = by_size[i].intValue();
+
+      java.util.Arrays.fill(check, -1);
+      for (k = 0; k < rows.length; k++)
+	{
+	  r = order[k];
+
+	  /* find the first displacement where all entries are free */
+	  for (b = 0; ; b++)
+	    {
+	      if (b + ncols > check.length)
+		{
+		  int[] bigger = new int[2*check.length];
+		  java.util.Arrays.fill(bigger, -1);
+		  System.arraycopy(check, 0, bigger, 0, check.length);
+		  check = bigger;
+		}
+	      for (j = 0; j < rows[r].length - 2; j += 2)
+		if (check[b + rows[r][j]] != -1) break;
+	      if (j >= rows[r].length - 2) break;
+	    }
+
+	  /* claim the slots */
+	  base[r] = b;
+	  for (j = 0; j < rows[r].length - 2; j += 2)
+	    check[b + rows[r][j]] = r;
+	  if (b + ncols > len) len = b + ncols;
+	}
+
+      if (len > Short.MAX_VALUE || rows.length > Short.MAX_VALUE) return null;
+
+      short[][] comb = new short[4][];
+      comb[0] = new short[rows.length];
+      comb[1] = new short[len];
+      comb[2] = new short[len];
+      comb[3] = new short[rows.length];
+      for (i = 0; i < len; i++) comb[1][i] = (short)check[i];
+      for (r = 0; r < rows.length; r++)
+	{
+	  comb[0][r] = (short)base[r];
+	  for (j = 0; j < rows[r].length - 2; j += 2)
+	    comb[2][base[r] + rows[r][j]] = rows[r][j+1];
+	  comb[3][r] = rows[r][rows[r].length - 1];
+	}
+      return comb;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Estimate the heap size of a short[][] in bytes (16 bytes of header 
+   *  per array, elements rounded up to 8 bytes). 
+   */
+  protected static long table_bytes(short[][] tab)
+    {
+      long bytes = (16 + 4L*tab.length + 7) & ~7L;
+      for (int i = 0; i < tab.length; i++)
+	bytes += (16 + 2L*tab[i].length + 7) & ~7L;
+      return bytes;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Emit the comb vector form of a table along with its accessor, 
+   *  [name]_comb_table().  If the table does not fit, nothing is emitted
+   *  and the parser uses the packed form only.
+   * @param out   stream to produce output on.
+   * @param name  prefix of the emitted names ("action" or "reduce").
+   * @param desc  what the table is, for comments.
+   * @param rows  the table in packed form.
+   * @param ncols the number of columns of the table.
+   */
+  protected static void emit_comb_table(
+    PrintWriter out, 
+    String      name, 
+    String      desc, 
+    short[][]   rows, 
+    int         ncols)
+    {
+      String[] parts = {"base", "check", "value", "default"};
+      short[][] comb = comb_pack(rows, ncols);
+
+      if (comb == null)
+	{
+	  System.err.println("*** Warning: " + desc + 
+		" table too large for comb vectors, using packed rows only");
+	  lexer.warning_count++;
+	  return;
+	}
+      comb_table_bytes += table_bytes(comb);
+
+      out.println();
+      out.println("  /** " + desc + " table as comb vectors */");
+      out.println("  protected static final short[][] _" + name + 
+		  "_comb = {"); 
+      for (int p = 0; p < comb.length; p++)
+	{
+	  out.print("    /*" + parts[p] + "*/{");
+	  for (int i = 0; i < comb[p].length; i++)
+	    {
+	      if (i % 16 == 0 && i > 0)
+		{
+		  out.println();
+		  out.print("      ");
+		}
+	      out.print(comb[p][i] + ",");
+	    }
+	  out.println("},");
+	}
+      out.println("  };");
+
+      out.println();
+      out.println("  /** access to " + desc + " table as comb vectors */");
+      out.println("  public short[][] " + name + "_comb_table() {return _" +
+		  name + "_comb;}");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
   /** Emit the parser subclass with embedded tables. 
    * @param out             stream to produce output on.
    * @param action_table    internal representation of the action table.
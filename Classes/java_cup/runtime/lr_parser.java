@@ -36,7 +36,9 @@ import java.util.Stack;
  *  without carrying out actions (to verify that a potential error recovery 
  *  has worked), and the other is used to parse through buffered "parse ahead" 
  *  input in order to execute all actions and re-synchronize the actual parser 
- *  configuration.<p>
+ *  configuration.  The parser can also be run in push mode (see 
+ *  push_start() and push()), where the caller hands it input Symbols as 
+ *  they arrive instead of the parser asking scan() for them.<p>
  *
  *  This is an abstract class which is normally filled out by a subclass
  *  generated by the JavaCup parser generator.  In addition to supplying
@@ -83,6 +85,15 @@ import java.util.Stack;
  *       must be parsed without error in order to consider a recovery to 
  *       be valid.  This defaults to 3.  Values less than 2 are not 
  *       recommended.
+ *  <dt> boolean array_stack()
+ *  <dd> This determines whether parse() runs on a parse_stack (an
+ *       unsynchronized stack that keeps parse states in an int array and
+ *       pops handles in one step) rather than a plain java.util.Stack.
+ *       This defaults to false.
+ *  <dt> short[][] action_comb_table(), short[][] reduce_comb_table()
+ *  <dd> These provide the action and reduce-goto tables as comb vectors
+ *       (see below).  They are supplied by generated code when JavaCup is
+ *       run with -comb_tables, and otherwise return null.
  *  <dt> void report_error(String message, Object info)
  *  <dd> This method is called to report an error.  The default implementation
  *       simply prints a message to System.err and where the error occurred.
@@ -102,8 +113,16 @@ import java.util.Stack;
  *         report_fatal_error("Couldn't repair and continue parse", null);
  *  </dl>
  *
+ *  The tables are held in a parse_tables object, which never changes once 
+ *  built and can be shared (see set_tables()); all other fields of the 
+ *  parser hold the state of the parse in progress.  A parser object is
+ *  therefore the context of one parse at a time, and concurrent parses of 
+ *  the same grammar each use their own parser object, sharing one 
+ *  parse_tables.
+ *
  * @see     java_cup.runtime.Symbol
  * @see     java_cup.runtime.Symbol
+ * @see     java_cup.runtime.parse_tables
  * @see     java_cup.runtime.virtual_parse_stack
  * @version last updated: 7/3/96
  * @author  Frank Flannery
@@ -137,6 +156,16 @@ public abstract class lr_parser {
    */
   protected int error_sync_size() {return _error_sync_size; }
 
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Whether parse() should use a parse_stack for its parse stack.  The 
+   *  parse_stack is still a java.util.Stack, so actions and error recovery
+   *  work on it unchanged.  Subclasses override this to turn it on.
+   *
+   * @see java_cup.runtime.parse_stack
+   */
+  protected boolean array_stack() {return false; }
+
   /*-----------------------------------------------------------*/
   /*--- (Access to) Instance Variables ------------------------*/
   /*-----------------------------------------------------------*/
@@ -187,6 +216,28 @@ public abstract class lr_parser {
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
 
+  /** The parse action table in row displacement (comb vector) form, or null
+   *  if the generated subclass does not supply it.  The table is four 
+   *  vectors: base, check, value and default.  The action for a state and
+   *  a Symbol index is value[base[state]+sym] if check[base[state]+sym] 
+   *  equals the state, and default[state] otherwise, so it takes constant
+   *  time to find instead of a search of the packed row.
+   *
+   * @see java_cup.runtime.lr_parser#get_action
+   */
+  public short[][] action_comb_table() {return null;}
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The reduce-goto table in comb vector form (as for action_comb_table()),
+   *  or null if the generated subclass does not supply it.
+   *
+   * @see java_cup.runtime.lr_parser#get_reduce
+   */
+  public short[][] reduce_comb_table() {return null;}
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
   /** The index of the start state (supplied by generated subclass). */
   public abstract int start_state();
 
@@ -223,6 +274,113 @@ public abstract class lr_parser {
       _done_parsing = true;
     }
 
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+  /* Reuse of a parser object.
+   *
+   * By default every call to parse() or debug_parse() fetches the tables
+   * again, calls init_actions() to create a fresh action object, and 
+   * pushes a fresh start Symbol.  A parser in reuse mode (set_reuse(true))
+   * does that only the first time and keeps its tables, action object,
+   * start Symbol and stack for later parses, so that a parse of a small 
+   * input costs little more than the parse itself.  user_init() is still
+   * called at the start of every parse, so the scanner is set up for the
+   * new input there as usual.  Action code that keeps per-parse state in
+   * the action object must not be used in reuse mode.
+   *
+   * The lifecycle of a reused parser is: set_reuse(true) once, then any
+   * number of parse() calls (each on new input), with reset() after each 
+   * one to drop references to the last input, e.g. before the parser is
+   * put back in a parser_pool.  A parser object is never used by two 
+   * threads at once. */
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Is this parser in reuse mode. */
+  protected boolean _reuse = false;
+
+  /** Has prepare() set up the tables and the action object. */
+  protected boolean _prepared = false;
+
+  /** The start Symbol kept for reuse. */
+  protected Symbol _start_symbol;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Turn reuse mode on or off.  Turning it off makes the next parse set 
+   *  everything up afresh.
+   */
+  public void set_reuse(boolean reuse)
+    {
+      _reuse = reuse;
+      if (!reuse)
+	{
+	  _prepared = false;
+	  _start_symbol = null;
+	}
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Is this parser in reuse mode. */
+  public boolean reuse() {return _reuse;}
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Set up direct references to the tables that drive the parser (from 
+   *  the parse_tables given with set_tables(), or from new ones built from
+   *  the table methods) and initialize the action encapsulation object.  
+   *  This is done at the start of every parse, or only of the first one in
+   *  reuse mode.
+   */
+  protected void prepare() throws java.lang.Exception
+    {
+      if (_reuse && _prepared) return;
+
+      if (!_tables_given)
+	tables = new parse_tables(this);
+      production_tab = tables.production_tab;
+      action_tab     = tables.action_tab;
+      reduce_tab     = tables.reduce_tab;
+
+      init_actions();
+      _prepared = true;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The dummy Symbol with the start state that is pushed to get a parse 
+   *  underway (the same one each time in reuse mode). 
+   */
+  protected Symbol start_symbol()
+    {
+      if (!_reuse)
+	return new Symbol(0, start_state());
+      if (_start_symbol == null)
+	_start_symbol = new Symbol(0, start_state());
+      return _start_symbol;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Drop the state of the last parse: empty the stack and forget the 
+   *  current and lookahead Symbols.  The tables, the action object and the
+   *  stack itself are kept.
+   */
+  public void reset()
+    {
+      stack.removeAllElements();
+      tos = 0;
+      cur_token = null;
+      lookahead = null;
+      lookahead_pos = 0;
+      _done_parsing = false;
+      _pushing = false;
+      _pushed = null;
+      _push_head = _push_tail = 0;
+      _push_eof = null;
+      _push_recovering = false;
+      _push_result = null;
+    }
+
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
   /* Global parse state shared by parse(), error recovery, and 
    * debugging routines */
@@ -256,6 +414,40 @@ public abstract class lr_parser {
   /** Direct reference to the reduce-goto table. */
   protected short[][] reduce_tab;
 
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The (immutable, possibly shared) tables the direct references above
+   *  are taken from, and which table lookups go through. */
+  protected parse_tables tables;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Were the tables given with set_tables() (rather than built by 
+   *  prepare()). */
+  protected boolean _tables_given = false;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Use the given tables, which may be shared with other parsers (of the 
+   *  same grammar) parsing at the same time, instead of building them from
+   *  the table methods of this parser.  Passing null goes back to building
+   *  them.
+   *
+   * @param t the tables to use.
+   */
+  public void set_tables(parse_tables t)
+    {
+      tables = t;
+      _tables_given = t != null;
+      _prepared = false;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The tables this parser uses (null before its first parse, unless 
+   *  they were given with set_tables()). */
+  public parse_tables tables() {return tables;}
+
   /*-----------------------------------------------------------*/
   /*--- General Methods ---------------------------------------*/
   /*-----------------------------------------------------------*/
@@ -386,51 +578,15 @@ public abstract class lr_parser {
    *  entries in the table), and the list is terminated by a default entry 
    *  (denoted with a Symbol index of -1).  To find the proper entry in a row 
    *  we do a linear or binary search (depending on the size of the row).  
+   *  If the table is also available as comb vectors, we index those 
+   *  instead.  The lookup is done by the parse_tables of this parser.
    *
    * @param state the state index of the action being accessed.
    * @param sym   the Symbol index of the action being accessed.
    */
   protected final short get_action(int state, int sym)
     {
-      short tag;
-      int first, last, probe;
-      short[] row = action_tab[state];
-
-      /* linear search if we are < 10 entries */
-      if (row.length < 20)
-        for (probe = 0; probe < row.length; probe++)
-	  {
-	    /* is this entry labeled with our Symbol or the default? */
-	    tag = row[probe++];
-	    if (tag == sym || tag == -1)
-	      {
-	        /* return the next entry */
-	        return row[probe];
-	      }
-	  }
-      /* otherwise binary search */
-      else
-	{
-	  first = 0; 
-	  last = (row.length-1)/2 - 1;  /* leave out trailing default entry */
-	  while (first <= last)
-	    {
-	      probe = (first+last)/2;
-	      if (sym == row[probe*2])
-		return row[probe*2+1];
-	      else if (sym > row[probe*2])
-		first = probe+1;
-	      else
-	        last = probe-1;
-	    }
-
-	  /* not found, use the default at the end */
-	  return row[row.length-1];
-	}
-
-      /* shouldn't happened, but if we run off the end we return the 
-	 default (error == 0) */
-      return 0;
+      return tables.action(state, sym);
     }
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
@@ -440,32 +596,15 @@ public abstract class lr_parser {
    *  Within each row, a list of index, value pairs are given (as sequential
    *  entries in the table), and the list is terminated by a default entry 
    *  (denoted with a Symbol index of -1).  To find the proper entry in a row 
-   *  we do a linear search.  
+   *  we do a linear search, or index the comb vectors if we have them.
+   *  The lookup is done by the parse_tables of this parser.
    *
    * @param state the state index of the entry being accessed.
    * @param sym   the Symbol index of the entry being accessed.
    */
   protected final short get_reduce(int state, int sym)
     {
-      short tag;
-      short[] row = reduce_tab[state];
-
-      /* if we have a null row we go with the default */
-      if (row == null)
-        return -1;
-
-      for (int probe = 0; probe < row.length; probe++)
-	{
-	  /* is this entry labeled with our Symbol or the default? */
-	  tag = row[probe++];
-	  if (tag == sym || tag == -1)
-	    {
-	      /* return the next entry */
-	      return row[probe];
-	    }
-	}
-      /* if we run off the end we return the default (error == -1) */
-      return -1;
+      return tables.reduce(state, sym);
     }
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
@@ -487,14 +626,9 @@ public abstract class lr_parser {
       /* information about production being reduced with */
       short handle_size, lhs_sym_num;
 
-      /* set up direct reference to tables to drive the parser */
-
-      production_tab = production_table();
-      action_tab     = action_table();
-      reduce_tab     = reduce_table();
-
-      /* initialize the action encapsulation object */
-      init_actions();
+      /* set up the tables and the action encapsulation object */
+      prepare();
+      _pushing = false;
 
       /* do user initialization */
       user_init();
@@ -502,9 +636,15 @@ public abstract class lr_parser {
       /* get the first token */
       cur_token = scan(); 
 
+      /* use the array based stack if asked to */
+      if (array_stack() && !(stack instanceof parse_stack))
+	stack = new parse_stack();
+      if (stack instanceof parse_stack)
+	return parse_array((parse_stack)stack);
+
       /* push dummy Symbol with start state to get us underway */
       stack.removeAllElements();
-      stack.push(new Symbol(0, start_state()));
+      stack.push(start_symbol());
       tos = 0;
 
       /* continue until we are told to stop */
@@ -575,6 +715,93 @@ public abstract class lr_parser {
 
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
 
+  /** The main parse loop of parse() when it runs on a parse_stack.  This
+   *  is the same loop, except that the current state is read from the int
+   *  state array of the stack and a handle is popped in one step.  Error
+   *  recovery goes through the ordinary Stack methods, which the 
+   *  parse_stack keeps in step with its state array.
+   *
+   * @param pstack the parse stack (which is also this.stack).
+   */
+  protected Symbol parse_array(parse_stack pstack) throws java.lang.Exception
+    {
+      /* the current action code */
+      int act;
+
+      /* the Symbol/stack element returned by a reduce */
+      Symbol lhs_sym = null;
+
+      /* information about production being reduced with */
+      short handle_size, lhs_sym_num;
+
+      /* push dummy Symbol with start state to get us underway */
+      pstack.removeAllElements();
+      pstack.push_sym(start_symbol());
+      tos = 0;
+
+      /* continue until we are told to stop */
+      for (_done_parsing = false; !_done_parsing; )
+	{
+	  /* look up action out of the current state with the current input */
+	  act = get_action(pstack.top_state(), cur_token.sym);
+
+	  /* decode the action -- > 0 encodes shift */
+	  if (act > 0)
+	    {
+	      /* shift to the encoded state by pushing it on the stack */
+	      cur_token.parse_state = act-1;
+	      pstack.push_sym(cur_token);
+	      tos++;
+
+	      /* advance to the next Symbol */
+	      cur_token = scan();
+	    }
+	  /* if its less than zero, then it encodes a reduce action */
+	  else if (act < 0)
+	    {
+	      /* perform the action for the reduce */
+	      lhs_sym = do_action((-act)-1, this, pstack, tos);
+
+	      /* look up information about the production */
+	      lhs_sym_num = production_tab[(-act)-1][0];
+	      handle_size = production_tab[(-act)-1][1];
+
+	      /* pop the handle off the stack */
+	      pstack.pop(handle_size);
+	      tos -= handle_size;
+
+	      /* look up the state to go to from the one popped back to */
+	      act = get_reduce(pstack.top_state(), lhs_sym_num);
+
+	      /* shift to that state */
+	      lhs_sym.parse_state = act;
+	      pstack.push_sym(lhs_sym);
+	      tos++;
+	    }
+	  /* finally if the entry is zero, we have an error */
+	  else if (act == 0)
+	    {
+	      /* call user syntax error reporting routine */
+	      syntax_error(cur_token);
+
+	      /* try to error recover */
+	      if (!error_recovery(false))
+		{
+		  /* if that fails give up with a fatal syntax error */
+		  unrecovered_syntax_error(cur_token);
+
+		  /* just in case that wasn't fatal enough, end parse */
+		  done_parsing();
+		} else {
+		  lhs_sym = pstack.top();
+		}
+	    }
+	}
+      return lhs_sym;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
   /** Write a debugging message to System.err for the debugging version 
    *  of the parser. 
    *
@@ -652,15 +879,11 @@ public abstract class lr_parser {
       /* information about production being reduced with */
       short handle_size, lhs_sym_num;
 
-      /* set up direct reference to tables to drive the parser */
-      production_tab = production_table();
-      action_tab     = action_table();
-      reduce_tab     = reduce_table();
-
       debug_message("# Initializing parser");
 
-      /* initialize the action encapsulation object */
-      init_actions();
+      /* set up the tables and the action encapsulation object */
+      prepare();
+      _pushing = false;
 
       /* do user initialization */
       user_init();
@@ -672,7 +895,7 @@ public abstract class lr_parser {
 
       /* push dummy Symbol with start state to get us underway */
       stack.removeAllElements();
-      stack.push(new Symbol(0, start_state()));
+      stack.push(start_symbol());
       tos = 0;
 
       /* continue until we are told to stop */
@@ -747,6 +970,324 @@ public abstract class lr_parser {
       return lhs_sym;
     }
 
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+  /* Push mode parsing.
+   *
+   * parse() pulls its input by calling scan() until it is done.  In push
+   * mode the caller hands Symbols to the parser as they become available,
+   * one at a time or in batches, with push(); each call parses as far as 
+   * the input given so far allows and returns without waiting for more.
+   * A push parse is started with push_start() and is over when push() 
+   * returns true (because the parser accepted or a fatal error was 
+   * reported, as for parse()); push_result() then gives what parse() 
+   * would have returned.  The EOF Symbol must be pushed like any other.
+   *
+   * The parse, actions and error recovery are those of parse(), and the
+   * same Symbols are consumed in the same order.  Error recovery reads
+   * ahead error_sync_size() Symbols or more; if they have not all been
+   * pushed yet, the recovery waits for them (after the stack has been
+   * put into its recovery configuration), and resumes as more arrive.
+   * Neither user_init() nor scan() is called in push mode. */
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Are we parsing in push mode. */
+  protected boolean _pushing = false;
+
+  /** Symbols pushed but not yet read by the parser, in 
+   *  _pushed[_push_head.._push_tail-1]. */
+  protected Symbol _pushed[];
+  protected int _push_head, _push_tail;
+
+  /** The EOF Symbol once it has been pushed (it is read again, as a 
+   *  copy, whenever the parser asks for input after it). */
+  protected Symbol _push_eof;
+
+  /** Are we in the middle of an error recovery that waits for input. */
+  protected boolean _push_recovering = false;
+
+  /** The Symbol produced by the last reduce (the result of the parse). */
+  protected Symbol _push_result;
+
+  /** Signal used inside error recovery when it runs out of pushed input.
+   *  It is thrown on every suspension, so there is one shared instance and
+   *  it carries no stack trace.
+   */
+  protected static class push_wait extends Exception {
+    private static final long serialVersionUID = 1L;
+    push_wait() {super("Parser is waiting for input", null, false, false);}
+  }
+
+  /** The one push_wait thrown. */
+  protected static final push_wait _push_wait = new push_wait();
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Start a parse in push mode.  This sets up the tables and action 
+   *  object as parse() does, and puts the start state on the stack.
+   */
+  public void push_start() throws java.lang.Exception
+    {
+      prepare();
+
+      _pushing = true;
+      if (array_stack() && !(stack instanceof parse_stack))
+	stack = new parse_stack();
+      if (_pushed == null) _pushed = new Symbol[16];
+      _push_head = _push_tail = 0;
+      _push_eof = null;
+      _push_recovering = false;
+      _push_result = null;
+
+      stack.removeAllElements();
+      stack.push(start_symbol());
+      tos = 0;
+      cur_token = null;
+      _done_parsing = false;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Push the next input Symbol and parse as far as possible.  Returns
+   *  true once the parse is over.
+   *
+   * @param sym the next input Symbol.
+   */
+  public boolean push(Symbol sym) throws java.lang.Exception
+    {
+      enqueue(sym);
+      return push_drive();
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Push a batch of input Symbols and parse as far as possible.  Returns 
+   *  true once the parse is over (any Symbols of the batch after that are
+   *  ignored).
+   *
+   * @param syms the input Symbols.
+   * @param off  the index of the first Symbol to push.
+   * @param len  the number of Symbols to push.
+   */
+  public boolean push(Symbol syms[], int off, int len) 
+    throws java.lang.Exception
+    {
+      for (int i = 0; i < len; i++)
+	enqueue(syms[off + i]);
+      return push_drive();
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Is the push parse over. */
+  public boolean push_done() {return _pushing && _done_parsing;}
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The result of a push parse that is over (what parse() returns). */
+  public Symbol push_result() {return _push_result;}
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Add a pushed Symbol to the end of the input queue. */
+  protected void enqueue(Symbol sym) throws java.lang.Exception
+    {
+      if (!_pushing)
+	throw new Exception("push() called without push_start()");
+      if (_push_eof != null)
+	throw new Exception("Symbol pushed after EOF");
+
+      if (_push_tail == _pushed.length)
+	{
+	  /* shift the queue down, or grow it if it is more than half full */
+	  Symbol q[] = _pushed;
+	  if (2*(_push_tail - _push_head) > _pushed.length)
+	    q = new Symbol[2*_pushed.length];
+	  System.arraycopy(_pushed, _push_head, q, 0, _push_tail - _push_head);
+	  for (int i = _push_tail - _push_head; i < _push_tail; i++)
+	    _pushed[i] = null;
+	  _push_tail -= _push_head;
+	  _push_head = 0;
+	  _pushed = q;
+	}
+      _pushed[_push_tail++] = sym;
+      if (sym.sym == EOF_sym())
+	_push_eof = sym;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Get the next input Symbol: from scan(), or in push mode from the
+   *  pushed Symbols (null if there are none left yet).  Pushed Symbols stay
+   *  in the queue array until it is next compacted, so that an error 
+   *  recovery waiting for input can put them back.
+   */
+  protected Symbol read_token() throws java.lang.Exception
+    {
+      if (!_pushing)
+	return scan();
+      if (_push_head < _push_tail)
+	return _pushed[_push_head++];
+      if (_push_eof != null)
+	return new Symbol(_push_eof.sym, _push_eof.left, _push_eof.right);
+      return null;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** As read_token(), but in push mode signal push_wait if there is no 
+   *  input yet. 
+   */
+  protected Symbol need_token() throws java.lang.Exception
+    {
+      Symbol sym = read_token();
+      if (sym == null && _pushing) throw _push_wait;
+      return sym;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The main loop of push mode: the loop of parse(), run until it is 
+   *  done or needs input that has not been pushed yet. 
+   */
+  protected boolean push_drive() throws java.lang.Exception
+    {
+      /* the current action code */
+      int act;
+
+      /* the Symbol/stack element returned by a reduce */
+      Symbol lhs_sym;
+
+      /* information about production being reduced with */
+      short handle_size, lhs_sym_num;
+
+      while (!_done_parsing)
+	{
+	  /* finish an error recovery that was waiting for input */
+	  if (_push_recovering)
+	    {
+	      if (!push_recovery()) return false;
+	      continue;
+	    }
+
+	  /* get the current Symbol, if we have it yet */
+	  if (cur_token == null && (cur_token = read_token()) == null)
+	    return false;
+
+	  /* look up action out of the current state with the current input */
+	  act = get_action(((Symbol)stack.peek()).parse_state, cur_token.sym);
+
+	  /* decode the action -- > 0 encodes shift */
+	  if (act > 0)
+	    {
+	      /* shift to the encoded state by pushing it on the stack */
+	      cur_token.parse_state = act-1;
+	      stack.push(cur_token);
+	      tos++;
+
+	      /* advance to the next Symbol (when it is there) */
+	      cur_token = null;
+	    }
+	  /* if its less than zero, then it encodes a reduce action */
+	  else if (act < 0)
+	    {
+	      /* perform the action for the reduce */
+	      lhs_sym = do_action((-act)-1, this, stack, tos);
+
+	      /* look up information about the production */
+	      lhs_sym_num = production_tab[(-act)-1][0];
+	      handle_size = production_tab[(-act)-1][1];
+
+	      /* pop the handle off the stack */
+	      for (int i = 0; i < handle_size; i++)
+		{
+		  stack.pop();
+		  tos--;
+		}
+	      
+	      /* look up the state to go to from the one popped back to */
+	      act = get_reduce(((Symbol)stack.peek()).parse_state, lhs_sym_num);
+
+	      /* shift to that state */
+	      lhs_sym.parse_state = act;
+	      stack.push(lhs_sym);
+	      tos++;
+	      _push_result = lhs_sym;
+	    }
+	  /* finally if the entry is zero, we have an error */
+	  else if (act == 0)
+	    {
+	      /* call user syntax error reporting routine */
+	      syntax_error(cur_token);
+
+	      /* put the stack in recovery configuration, then finish the
+		 recovery when we have the input it needs */
+	      if (!find_recovery_config(false))
+		push_unrecovered();
+	      else
+		_push_recovering = true;
+	    }
+	}
+      return true;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Carry out the rest of error_recovery() once the stack is in recovery
+   *  configuration.  If the pushed input runs out, the input read so far
+   *  is put back and false returned, to try again after the next push.
+   */
+  protected boolean push_recovery() throws java.lang.Exception
+    {
+      int    mark  = _push_head;
+      Symbol saved = cur_token;
+
+      try
+	{
+	  /* read ahead and discard Symbols until we can parse ahead */
+	  read_lookahead();
+	  for (;;)
+	    {
+	      if (try_parse_ahead(false)) break;
+	      if (lookahead[0].sym == EOF_sym())
+		{
+		  _push_recovering = false;
+		  push_unrecovered();
+		  return true;
+		}
+	      restart_lookahead();
+	    }
+	}
+      catch (push_wait e)
+	{
+	  /* put the input back (read_token() leaves it in the queue, which 
+	     is not compacted while we hold a mark) */
+	  _push_head = mark;
+	  cur_token = saved;
+	  lookahead = null;
+	  return false;
+	}
+
+      /* do the real parse (including actions) across the lookahead */
+      _push_recovering = false;
+      parse_lookahead(false);
+      _push_result = (Symbol)stack.peek();
+      return true;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Give up the push parse after error recovery has failed, as parse() 
+   *  does. 
+   */
+  protected void push_unrecovered() throws java.lang.Exception
+    {
+      /* if that fails give up with a fatal syntax error */
+      unrecovered_syntax_error(cur_token);
+
+      /* just in case that wasn't fatal enough, end parse */
+      done_parsing();
+    }
+
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
   /* Error recovery code */
   /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
@@ -911,7 +1452,7 @@ public abstract class lr_parser {
       for (int i = 0; i < error_sync_size(); i++)
 	{
 	  lookahead[i] = cur_token;
-	  cur_token = scan();
+	  cur_token = need_token();
 	}
 
       /* start at the beginning */
@@ -949,7 +1490,7 @@ public abstract class lr_parser {
 	lookahead[i-1] = lookahead[i];
 
       /* read a new Symbol into the last spot */
-      cur_token = scan();
+      cur_token = need_token();
       lookahead[error_sync_size()-1] = cur_token;
 
       /* reset our internal position marker */
@@ -1084,8 +1625,9 @@ public abstract class lr_parser {
 		{
 		  if (debug) debug_message("# Completed reparse");
 
-		  /* scan next Symbol so we can continue parse */
-		  cur_token = scan();
+		  /* scan next Symbol so we can continue parse (in push mode,
+		     this is null until the next Symbol is pushed) */
+		  cur_token = read_token();
 
 		  /* go back to normal parser */
 		  return;
@@ -0,0 +1,357 @@
+
+package java_cup.runtime;
+
+import java.util.Stack;
+
+/** This class implements the parse stack used by lr_parser when its
+ *  array_stack() mode is on.  It keeps the Symbols of the stack in the
+ *  element array inherited from java.util.Vector (allocated as a Symbol[])
+ *  and, in parallel with it, the parse state of each entry in a plain int
+ *  array.  None of the stack operations are synchronized, the parser can
+ *  read the state on top of the stack without going through the Symbol
+ *  that holds it, and the Symbols of a handle are popped in one step.<p>
+ *
+ *  Since this is still a java.util.Stack, it is handed unchanged to
+ *  do_action() and to the error recovery code, which see the Symbols
+ *  through push(), pop(), peek(), elementAt() and size() as before.
+ *  The state of a Symbol is recorded when it is pushed, so its parse_state
+ *  must be set before that (as the parser always does).  Only the Stack
+ *  operations listed here keep the state array up to date; the Vector
+ *  methods that change the stack anywhere but at the top, or resize it,
+ *  throw UnsupportedOperationException.
+ *
+ * @see     java_cup.runtime.lr_parser
+ * @see     java_cup.runtime.Symbol
+ */
+
+public class parse_stack extends Stack {
+
+  /*-----------------------------------------------------------*/
+  /*--- Constructor(s) ----------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Construct an empty stack with a default capacity. */
+  public parse_stack()
+    {
+      this(64);
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Construct an empty stack with room for a given number of Symbols.
+   * @param capacity the initial capacity.
+   */
+  public parse_stack(int capacity)
+    {
+      if (capacity < 1) capacity = 1;
+      elementData = new Symbol[capacity];
+      states      = new int[capacity];
+    }
+
+  /*-----------------------------------------------------------*/
+  /*--- (Access to) Instance Variables ------------------------*/
+  /*-----------------------------------------------------------*/
+
+  private static final long serialVersionUID = 1L;
+
+  /** Parse state of each Symbol on the stack, indexed like the Symbols. */
+  protected int[] states;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The parse state on top of the stack. */
+  public final int top_state()
+    {
+      return states[elementCount-1];
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The Symbol on top of the stack. */
+  public final Symbol top()
+    {
+      return (Symbol)elementData[elementCount-1];
+    }
+
+  /*-----------------------------------------------------------*/
+  /*--- General Methods ---------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Push a Symbol in the parse state it already carries.
+   * @param sym the Symbol to push.
+   */
+  public final void push_sym(Symbol sym)
+    {
+      int n = elementCount;
+      if (n == states.length)
+	grow(n + 1);
+      elementData[n] = sym;
+      states[n] = sym.parse_state;
+      elementCount = n + 1;
+      modCount++;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Pop the top n Symbols (a whole handle) off the stack at once.
+   * @param n the number of Symbols to pop.
+   */
+  public final void pop(int n)
+    {
+      int top = elementCount;
+      if (n > top)
+	throw new java.util.EmptyStackException();
+      for (int i = top - n; i < top; i++)
+	elementData[i] = null;
+      elementCount = top - n;
+      modCount++;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Make room for at least min Symbols, keeping the element array a
+   *  Symbol[] and the state array the same length.
+   */
+  protected void grow(int min)
+    {
+      int cap = Math.max(2 * states.length, min);
+      Symbol[] syms = new Symbol[cap];
+      int[] st = new int[cap];
+      System.arraycopy(elementData, 0, syms, 0, elementCount);
+      System.arraycopy(states, 0, st, 0, elementCount);
+      elementData = syms;
+      states = st;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** A copy of the stack with its own Symbol[] and state arrays, both
+   *  of the same length (Vector.clone() would trim the first and share
+   *  the second).
+   */
+  public Object clone()
+    {
+      parse_stack copy = (parse_stack)super.clone();
+      copy.elementData = java.util.Arrays.copyOf(elementData, states.length);
+      copy.states = (int[])states.clone();
+      return copy;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+  /* Unsynchronized versions of the Stack and Vector methods used by the
+   * parser, the error recovery code, and generated actions. */
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object push(Object item)
+    {
+      push_sym((Symbol)item);
+      return item;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object pop()
+    {
+      int n = elementCount;
+      if (n == 0)
+	throw new java.util.EmptyStackException();
+      Object sym = elementData[--n];
+      elementData[n] = null;
+      elementCount = n;
+      modCount++;
+      return sym;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object peek()
+    {
+      if (elementCount == 0)
+	throw new java.util.EmptyStackException();
+      return elementData[elementCount-1];
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean empty()
+    {
+      return elementCount == 0;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public int size()
+    {
+      return elementCount;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object elementAt(int index)
+    {
+      if (index >= elementCount)
+	throw new ArrayIndexOutOfBoundsException(index + " >= " + elementCount);
+      return elementData[index];
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void addElement(Object obj)
+    {
+      push_sym((Symbol)obj);
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void removeAllElements()
+    {
+      for (int i = 0; i < elementCount; i++)
+	elementData[i] = null;
+      elementCount = 0;
+      modCount++;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean add(Object obj)
+    {
+      push_sym((Symbol)obj);
+      return true;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+  /* Vector methods that would put the state array out of step. */
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  protected static UnsupportedOperationException unsupported(String what)
+    {
+      return new UnsupportedOperationException(
+	"parse_stack." + what + "() is not supported");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void setElementAt(Object obj, int index)
+    {
+      throw unsupported("setElementAt");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void insertElementAt(Object obj, int index)
+    {
+      throw unsupported("insertElementAt");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void removeElementAt(int index)
+    {
+      throw unsupported("removeElementAt");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean removeElement(Object obj)
+    {
+      throw unsupported("removeElement");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object set(int index, Object obj)
+    {
+      throw unsupported("set");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void add(int index, Object obj)
+    {
+      throw unsupported("add");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public Object remove(int index)
+    {
+      throw unsupported("remove");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean remove(Object obj)
+    {
+      throw unsupported("remove");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean addAll(java.util.Collection c)
+    {
+      throw unsupported("addAll");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean addAll(int index, java.util.Collection c)
+    {
+      throw unsupported("addAll");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean removeAll(java.util.Collection c)
+    {
+      throw unsupported("removeAll");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean retainAll(java.util.Collection c)
+    {
+      throw unsupported("retainAll");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public boolean removeIf(java.util.function.Predicate filter)
+    {
+      throw unsupported("removeIf");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void replaceAll(java.util.function.UnaryOperator op)
+    {
+      throw unsupported("replaceAll");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void sort(java.util.Comparator c)
+    {
+      throw unsupported("sort");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  protected void removeRange(int from, int to)
+    {
+      throw unsupported("removeRange");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void setSize(int size)
+    {
+      throw unsupported("setSize");
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  public void trimToSize()
+    {
+      throw unsupported("trimToSize");
+    }
+}
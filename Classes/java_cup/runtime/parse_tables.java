@@ -0,0 +1,211 @@
+
+package java_cup.runtime;
+
+/** This class holds the tables that drive an lr_parser: the production,
+ *  action and reduce-goto tables (and the comb vector forms of the latter
+ *  two, when the parser was generated with -comb_tables), along with the
+ *  start state, start production, EOF and error Symbol indexes of the
+ *  grammar.  It is built once from a parser object and never changes
+ *  afterwards, so one parse_tables can be shared by any number of parsers
+ *  running at the same time on different threads, without copying and
+ *  without locking.<p>
+ *
+ *  Everything that changes during a parse (the parse stack, the current
+ *  and lookahead Symbols, and so on) lives in the lr_parser object, which
+ *  is the per-parse context.  A parser given a parse_tables with
+ *  set_tables() takes its tables from there; otherwise it builds its own
+ *  from its table methods when it starts parsing.  A program that runs
+ *  many concurrent parses builds one parse_tables, and one parser object
+ *  (which is cheap) per thread or per parse:
+ *  <pre>
+ *    parse_tables tables = new parse_tables(new parser());
+ *    ...
+ *    parser p = new parser();      // in each thread
+ *    p.set_tables(tables);
+ *    p.parse();
+ *  </pre>
+ *
+ * @see     java_cup.runtime.lr_parser
+ */
+
+public final class parse_tables {
+
+  /*-----------------------------------------------------------*/
+  /*--- Constructor(s) ----------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Build the tables of a parser (from the methods its generated subclass
+   *  supplies).  The parser is only asked for its tables; it is not
+   *  otherwise used or kept.
+   * @param parser the parser to take the tables from.
+   */
+  public parse_tables(lr_parser parser)
+    {
+      short[][] comb;
+
+      production_tab   = parser.production_table();
+      action_tab       = parser.action_table();
+      reduce_tab       = parser.reduce_table();
+      start_state      = parser.start_state();
+      start_production = parser.start_production();
+      EOF_sym          = parser.EOF_sym();
+      error_sym        = parser.error_sym();
+
+      comb = parser.action_comb_table();
+      action_base    = comb == null ? null : comb[0];
+      action_check   = comb == null ? null : comb[1];
+      action_value   = comb == null ? null : comb[2];
+      action_default = comb == null ? null : comb[3];
+
+      comb = parser.reduce_comb_table();
+      reduce_base    = comb == null ? null : comb[0];
+      reduce_check   = comb == null ? null : comb[1];
+      reduce_value   = comb == null ? null : comb[2];
+      reduce_default = comb == null ? null : comb[3];
+    }
+
+  /*-----------------------------------------------------------*/
+  /*--- (Access to) Instance Variables ------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** The production table (see lr_parser.production_table()). */
+  public final short[][] production_tab;
+
+  /** The parse action table (see lr_parser.action_table()). */
+  public final short[][] action_tab;
+
+  /** The reduce-goto table (see lr_parser.reduce_table()). */
+  public final short[][] reduce_tab;
+
+  /** The vectors of the comb form of the action table (null if none). */
+  protected final short[] action_base, action_check, action_value,
+			  action_default;
+
+  /** The vectors of the comb form of the reduce-goto table (null if none). */
+  protected final short[] reduce_base, reduce_check, reduce_value,
+			  reduce_default;
+
+  /** The index of the start state. */
+  public final int start_state;
+
+  /** The index of the start production. */
+  public final int start_production;
+
+  /** The index of the EOF Symbol. */
+  public final int EOF_sym;
+
+  /** The index of the error Symbol. */
+  public final int error_sym;
+
+  /*-----------------------------------------------------------*/
+  /*--- General Methods ---------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Fetch an action from the action table.  The table is broken up into
+   *  rows, one per state (rows are indexed directly by state number).
+   *  Within each row, a list of index, value pairs are given (as sequential
+   *  entries in the table), and the list is terminated by a default entry
+   *  (denoted with a Symbol index of -1).  To find the proper entry in a row
+   *  we do a linear or binary search (depending on the size of the row).
+   *  If the table is also available as comb vectors, we index those
+   *  instead.
+   *
+   * @param state the state index of the action being accessed.
+   * @param sym   the Symbol index of the action being accessed.
+   */
+  public final short action(int state, int sym)
+    {
+      short tag;
+      int first, last, probe;
+
+      /* constant time lookup in the comb vectors if we have them */
+      if (action_base != null)
+	{
+	  probe = action_base[state] + sym;
+	  return action_check[probe] == state ?
+	    action_value[probe] : action_default[state];
+	}
+
+      short[] row = action_tab[state];
+
+      /* linear search if we are < 10 entries */
+      if (row.length < 20)
+        for (probe = 0; probe < row.length; probe++)
+	  {
+	    /* is this entry labeled with our Symbol or the default? */
+	    tag = row[probe++];
+	    if (tag == sym || tag == -1)
+	      {
+	        /* return the next entry */
+	        return row[probe];
+	      }
+	  }
+      /* otherwise binary search */
+      else
+	{
+	  first = 0;
+	  last = (row.length-1)/2 - 1;  /* leave out trailing default entry */
+	  while (first <= last)
+	    {
+	      probe = (first+last)/2;
+	      if (sym == row[probe*2])
+		return row[probe*2+1];
+	      else if (sym > row[probe*2])
+		first = probe+1;
+	      else
+	        last = probe-1;
+	    }
+
+	  /* not found, use the default at the end */
+	  return row[row.length-1];
+	}
+
+      /* shouldn't happened, but if we run off the end we return the
+	 default (error == 0) */
+      return 0;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Fetch a state from the reduce-goto table.  The table is broken up into
+   *  rows, one per state (rows are indexed directly by state number).
+   *  Within each row, a list of index, value pairs are given (as sequential
+   *  entries in the table), and the list is terminated by a default entry
+   *  (denoted with a Symbol index of -1).  To find the proper entry in a row
+   *  we do a linear search, or index the comb vectors if we have them.
+   *
+   * @param state the state index of the entry being accessed.
+   * @param sym   the Symbol index of the entry being accessed.
+   */
+  public final short reduce(int state, int sym)
+    {
+      short tag;
+
+      /* constant time lookup in the comb vectors if we have them */
+      if (reduce_base != null)
+	{
+	  int probe = reduce_base[state] + sym;
+	  return reduce_check[probe] == state ?
+	    reduce_value[probe] : reduce_default[state];
+	}
+
+      short[] row = reduce_tab[state];
+
+      /* if we have a null row we go with the default */
+      if (row == null)
+        return -1;
+
+      for (int probe = 0; probe < row.length; probe++)
+	{
+	  /* is this entry labeled with our Symbol or the default? */
+	  tag = row[probe++];
+	  if (tag == sym || tag == -1)
+	    {
+	      /* return the next entry */
+	      return row[probe];
+	    }
+	}
+      /* if we run off the end we return the default (error == -1) */
+      return -1;
+    }
+}
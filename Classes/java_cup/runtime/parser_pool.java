@@ -0,0 +1,115 @@
+
+package java_cup.runtime;
+
+/** This class keeps one warm parser per thread for programs that run many
+ *  small parses.  A subclass supplies create(), which builds a parser; the
+ *  pool puts it in reuse mode (see lr_parser.set_reuse()) and hands the
+ *  same object back to the same thread on every acquire(), so its tables,
+ *  action object and stack are set up only once per thread.  The parsers
+ *  of all threads share one parse_tables, built from the first parser the
+ *  pool creates.<p>
+ *
+ *  A parser is acquired, given its input (typically through the scanner
+ *  that its user_init() and scan() use), parsed with, and released:
+ *  <pre>
+ *    lr_parser p = pool.acquire();
+ *    try {
+ *      ... set up the input for p ...
+ *      result = p.parse();
+ *    } finally {
+ *      pool.release(p);
+ *    }
+ *  </pre>
+ *  release() calls reset() on the parser so that it does not hold on to
+ *  the last input.  If a thread acquires again before it has released
+ *  (e.g. a parse action that starts another parse), it gets a new parser
+ *  for the inner parse, which is dropped when that is released.<p>
+ *
+ *  A pool is of little use on virtual threads, which are rarely reused;
+ *  there, create a parser for each parse and give it the shared tables 
+ *  with set_tables(tables()).
+ *
+ * @see     java_cup.runtime.lr_parser
+ */
+
+public abstract class parser_pool {
+
+  /*-----------------------------------------------------------*/
+  /*--- Constructor(s) ----------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Simple constructor. */
+  public parser_pool()
+    {
+      /* nothing to do here */
+    }
+
+  /*-----------------------------------------------------------*/
+  /*--- (Access to) Instance Variables ------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** The idle parser of each thread, or null while it is in use. */
+  protected ThreadLocal idle = new ThreadLocal();
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The tables shared by all parsers of the pool (null until the first
+   *  parser is created).  Two threads may race to set this, but as the
+   *  tables are immutable either result is fine.
+   */
+  protected parse_tables shared;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The tables shared by the parsers of the pool (null until one has been
+   *  created). */
+  public parse_tables tables() {return shared;}
+
+  /*-----------------------------------------------------------*/
+  /*--- General Methods ---------------------------------------*/
+  /*-----------------------------------------------------------*/
+
+  /** Build a new parser (supplied by subclass). */
+  protected abstract lr_parser create() throws java.lang.Exception;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Get a parser in reuse mode for the current thread: its idle parser if
+   *  it has one, or a new one.
+   */
+  public lr_parser acquire() throws java.lang.Exception
+    {
+      lr_parser p = (lr_parser)idle.get();
+      if (p != null)
+	{
+	  idle.set(null);
+	  return p;
+	}
+      p = create();
+      if (shared == null)
+	shared = new parse_tables(p);
+      p.set_tables(shared);
+      p.set_reuse(true);
+      return p;
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Give a parser back after a parse.  It is reset and kept as the idle
+   *  parser of the current thread, unless the thread has one already.
+   */
+  public void release(lr_parser p)
+    {
+      p.reset();
+      if (idle.get() == null)
+	idle.set(p);
+    }
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Drop the idle parser of the current thread, if any. */
+  public void clear()
+    {
+      idle.remove();
+    }
+}
@@ -0,0 +1,200 @@
+// Parse throughput benchmark
+
+package java_cup.simple_calc;
+
+import java_cup.runtime.Symbol;
+
+/** Times parser.parse() on a long token stream, with the parse stack as a
+ *  plain java.util.Stack and as a java_cup.runtime.parse_stack (the
+ *  parser's array_stack() mode), and with table lookups in the packed rows
+ *  and in the comb vectors (parser.java is generated with -comb_tables), 
+ *  and reports tokens per second for each.
+ *
+ *  The tokens are built once, before timing, and handed to the parser by
+ *  an overriding scan(), so only the parser and the calculator actions are
+ *  measured.  The input is a single statement, so the action that prints
+ *  its value runs once per parse.
+ *
+ *  It then times many parses of a tiny statement, with a new parser for 
+ *  each and with a reused parser from a parser_pool, and reports parses 
+ *  per second for both.
+ *
+ *  usage: java java_cup.simple_calc.Bench [-tokens n] [-small n] 
+ *                                         [-warmup n] [-runs n]
+ */
+class Bench {
+
+  static int tokens = 1000000;
+  static int small = 1000000;
+  static int warmup = 10;
+  static int runs = 10;
+
+  /* a parser reading from a prebuilt array of Symbols */
+  static class array_parser extends parser {
+    Symbol[] input;
+    int next;
+    boolean array, comb;
+
+    array_parser(Symbol[] in, boolean use_array, boolean use_comb)
+      { input = in; array = use_array; comb = use_comb; }
+
+    protected boolean array_stack() { return array; }
+
+    public short[][] action_comb_table() 
+      { return comb ? super.action_comb_table() : null; }
+
+    public short[][] reduce_comb_table() 
+      { return comb ? super.reduce_comb_table() : null; }
+
+    public void user_init() { next = 0; }
+
+    public Symbol scan()
+      { return next < input.length ? input[next++] : input[input.length-1]; }
+  }
+
+  public static void main(String[] args) throws Exception
+    {
+      for (int i = 0; i < args.length; i++)
+	{
+	  if (args[i].equals("-tokens") && i + 1 < args.length)
+	    tokens = Integer.parseInt(args[++i]);
+	  else if (args[i].equals("-small") && i + 1 < args.length)
+	    small = Integer.parseInt(args[++i]);
+	  else if (args[i].equals("-warmup") && i + 1 < args.length)
+	    warmup = Integer.parseInt(args[++i]);
+	  else if (args[i].equals("-runs") && i + 1 < args.length)
+	    runs = Integer.parseInt(args[++i]);
+	  else
+	    {
+	      System.err.println("usage: java java_cup.simple_calc.Bench " +
+				 "[-tokens n] [-small n] [-warmup n] [-runs n]");
+	      System.exit(1);
+	    }
+	}
+
+      Symbol[] input = input(tokens);
+      System.out.println(input.length + " tokens, warmup " + warmup +
+			 ", runs " + runs);
+      report("Stack, packed", new array_parser(input, false, false));
+      report("Stack, comb", new array_parser(input, false, true));
+      report("parse_stack, packed", new array_parser(input, true, false));
+      report("parse_stack, comb", new array_parser(input, true, true));
+
+      /* 1 + 2 * 3 ; */
+      final Symbol[] tiny = {
+	new Symbol(sym.NUMBER, new Integer(1)), new Symbol(sym.PLUS),
+	new Symbol(sym.NUMBER, new Integer(2)), new Symbol(sym.TIMES),
+	new Symbol(sym.NUMBER, new Integer(3)), new Symbol(sym.SEMI),
+	new Symbol(sym.EOF)};
+      System.out.println(small + " parses of " + tiny.length + " tokens");
+      report_small("new parser", tiny, null);
+      report_small("parser_pool", tiny, new java_cup.runtime.parser_pool() {
+	  protected java_cup.runtime.lr_parser create()
+	    { return new array_parser(tiny, true, true); }
+	});
+    }
+
+  /* parses of a tiny input with a new parser each time, or from a pool */
+  static void report_small(String name, Symbol[] tiny,
+			   java_cup.runtime.parser_pool pool) throws Exception
+    {
+      java.io.PrintStream out = System.out;
+      long best = Long.MAX_VALUE, total = 0;
+      try
+	{
+	  System.setOut(new java.io.PrintStream(new java.io.OutputStream() {
+	      public void write(int b) { }
+	    }));
+	  for (int i = 0; i < warmup + runs; i++)
+	    {
+	      long t0 = System.nanoTime();
+	      for (int j = 0; j < small; j++)
+		{
+		  if (pool == null)
+		    new array_parser(tiny, true, true).parse();
+		  else
+		    {
+		      java_cup.runtime.lr_parser p = pool.acquire();
+		      try
+			{
+			  p.parse();
+			}
+		      finally
+			{
+			  pool.release(p);
+			}
+		    }
+		}
+	      long t = System.nanoTime() - t0;
+	      if (i >= warmup)
+		{
+		  best = Math.min(best, t);
+		  total += t;
+		}
+	    }
+	}
+      finally
+	{
+	  System.setOut(out);
+	}
+      out.println(name + ": best " + rate(small, best) + 
+		  " M parses/s, mean " + rate(small, total / runs) + 
+		  " M parses/s");
+    }
+
+  /* "(1 + 2 * 3) - 4 * (5 - 6) + ..." up to about n tokens, then SEMI, EOF */
+  static Symbol[] input(int n)
+    {
+      int[] unit = {sym.LPAREN, sym.NUMBER, sym.PLUS, sym.NUMBER, sym.TIMES,
+		    sym.NUMBER, sym.RPAREN, sym.MINUS, sym.NUMBER, sym.TIMES,
+		    sym.LPAREN, sym.NUMBER, sym.MINUS, sym.NUMBER, sym.RPAREN,
+		    sym.PLUS};
+      int reps = Math.max(n / unit.length, 1);
+      Symbol[] in = new Symbol[reps * unit.length + 3];
+      int k = 0, num = 0;
+      for (int r = 0; r < reps; r++)
+	for (int i = 0; i < unit.length; i++)
+	  in[k++] = unit[i] == sym.NUMBER
+	    ? new Symbol(sym.NUMBER, new Integer(++num % 7))
+	    : new Symbol(unit[i]);
+      in[k++] = new Symbol(sym.NUMBER, new Integer(0));
+      in[k++] = new Symbol(sym.SEMI);
+      in[k++] = new Symbol(sym.EOF);
+      return in;
+    }
+
+  static void report(String name, array_parser p) throws Exception
+    {
+      java.io.PrintStream out = System.out;
+      java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+      long best = Long.MAX_VALUE, total = 0;
+      try
+	{
+	  System.setOut(new java.io.PrintStream(result));
+	  for (int i = 0; i < warmup; i++)
+	    p.parse();
+	  for (int i = 0; i < runs; i++)
+	    {
+	      long t0 = System.nanoTime();
+	      p.parse();
+	      long t = System.nanoTime() - t0;
+	      best = Math.min(best, t);
+	      total += t;
+	    }
+	}
+      finally
+	{
+	  System.setOut(out);
+	}
+      String value = result.toString();
+      value = value.substring(value.lastIndexOf('=')).trim();
+      out.println(name + ": best " + rate(p.input.length, best) +
+		  " Mtok/s, mean " + rate(p.input.length, total / runs) +
+		  " Mtok/s (" + value + ")");
+    }
+
+  static String rate(int n, long nanos)
+    {
+      return String.valueOf(Math.round(n * 10000.0 / nanos) / 10.0);
+    }
+}
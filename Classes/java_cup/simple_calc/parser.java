@@ -1,7 +1,7 @@
 
 //----------------------------------------------------
 // The following code was generated by CUP v0.10g
-// Tue Sep 29 02:10:04 EDT 1998
+// Sun Oct 18 14:10:03 UTC 2026
 //----------------------------------------------------
 
 package java_cup.simple_calc;
@@ -24,51 +24,80 @@ public class parser extends java_cup.runtime.lr_parser {
 
   /** parse action table */
   protected static final short[][] _action_table = {
-    /*0*/{4,2,9,7,11,3,-1,0},
-    /*1*/{4,2,9,7,11,3,-1,0},
+    /*0*/{4,4,9,5,11,3,-1,0},
+    /*1*/{0,-3,4,-3,9,-3,11,-3,-1,0},
     /*2*/{2,-11,3,-11,4,-11,5,-11,6,-11,7,-11,10,-11,-1,0},
-    /*3*/{0,-3,4,-3,9,-3,11,-3,-1,0},
-    /*4*/{2,-4,3,12,4,10,5,14,6,13,7,9,-1,0},
-    /*5*/{0,21,4,2,9,7,11,3,-1,0},
-    /*6*/{4,2,9,7,11,3,-1,0},
-    /*7*/{3,12,4,10,5,14,6,13,7,9,10,11,-1,0},
-    /*8*/{4,2,9,7,11,3,-1,0},
-    /*9*/{4,2,9,7,11,3,-1,0},
-    /*10*/{2,-13,3,-13,4,-13,5,-13,6,-13,7,-13,10,-13,-1,0},
-    /*11*/{4,2,9,7,11,3,-1,0},
-    /*12*/{4,2,9,7,11,3,-1,0},
-    /*13*/{4,2,9,7,11,3,-1,0},
-    /*14*/{2,-8,3,-8,4,-8,5,-8,6,-8,7,-8,10,-8,-1,0},
-    /*15*/{2,-9,3,-9,4,-9,5,-9,6,-9,7,-9,10,-9,-1,0},
-    /*16*/{2,-6,3,-6,4,-6,5,14,6,13,7,9,10,-6,-1,0},
-    /*17*/{2,-7,3,-7,4,-7,5,14,6,13,7,9,10,-7,-1,0},
+    /*3*/{4,4,9,5,11,3,-1,0},
+    /*4*/{4,4,9,5,11,3,-1,0},
+    /*5*/{0,21,4,4,9,5,11,3,-1,0},
+    /*6*/{2,-4,3,10,4,11,5,13,6,12,7,8,-1,0},
+    /*7*/{4,4,9,5,11,3,-1,0},
+    /*8*/{2,18,-1,0},
+    /*9*/{4,4,9,5,11,3,-1,0},
+    /*10*/{4,4,9,5,11,3,-1,0},
+    /*11*/{4,4,9,5,11,3,-1,0},
+    /*12*/{4,4,9,5,11,3,-1,0},
+    /*13*/{2,-8,3,-8,4,-8,5,-8,6,-8,7,-8,10,-8,-1,0},
+    /*14*/{2,-9,3,-9,4,-9,5,-9,6,-9,7,-9,10,-9,-1,0},
+    /*15*/{2,-7,3,-7,4,-7,5,13,6,12,7,8,10,-7,-1,0},
+    /*16*/{2,-6,3,-6,4,-6,5,13,6,12,7,8,10,-6,-1,0},
+    /*17*/{0,-5,4,-5,9,-5,11,-5,-1,0},
     /*18*/{2,-10,3,-10,4,-10,5,-10,6,-10,7,-10,10,-10,-1,0},
     /*19*/{0,-1,4,-1,9,-1,11,-1,-1,0},
     /*20*/{0,-2,-1,0},
-    /*21*/{2,23,-1,0},
-    /*22*/{0,-5,4,-5,9,-5,11,-5,-1,0},
+    /*21*/{3,10,4,11,5,13,6,12,7,8,10,23,-1,0},
+    /*22*/{2,-13,3,-13,4,-13,5,-13,6,-13,7,-13,10,-13,-1,0},
     /*23*/{2,-12,3,-12,4,-12,5,-12,6,-12,7,-12,10,-12,-1,0},
   };
 
   /** access to parse action table */
   public short[][] action_table() {return _action_table;}
 
+  /** parse action table as comb vectors */
+  protected static final short[][] _action_comb = {
+    /*base*/{102,85,0,108,111,86,72,112,6,120,121,124,130,9,18,27,
+      36,98,45,99,0,77,54,63,},
+    /*check*/{20,-1,2,2,2,2,2,2,8,-1,2,13,13,13,13,13,
+      13,-1,-1,13,14,14,14,14,14,14,-1,-1,14,15,15,15,
+      15,15,15,-1,-1,15,16,16,16,16,16,16,-1,-1,16,18,
+      18,18,18,18,18,-1,-1,18,22,22,22,22,22,22,-1,-1,
+      22,23,23,23,23,23,23,-1,-1,23,6,6,6,6,6,6,
+      21,21,21,21,21,1,5,21,-1,1,5,-1,-1,-1,1,5,
+      1,5,17,19,-1,-1,17,19,-1,-1,0,17,19,17,19,0,
+      3,0,-1,4,7,3,-1,3,4,7,4,7,9,10,-1,-1,
+      11,9,10,9,10,11,12,11,-1,-1,-1,12,-1,12,},
+    /*value*/{-2,0,-11,-11,-11,-11,-11,-11,18,0,-11,-8,-8,-8,-8,-8,
+      -8,0,0,-8,-9,-9,-9,-9,-9,-9,0,0,-9,-7,-7,-7,
+      13,12,8,0,0,-7,-6,-6,-6,13,12,8,0,0,-6,-10,
+      -10,-10,-10,-10,-10,0,0,-10,-13,-13,-13,-13,-13,-13,0,0,
+      -13,-12,-12,-12,-12,-12,-12,0,0,-12,-4,10,11,13,12,8,
+      10,11,13,12,8,-3,21,23,0,-3,4,0,0,0,-3,5,
+      -3,3,-5,-1,0,0,-5,-1,0,0,4,-5,-1,-5,-1,5,
+      4,3,0,4,4,5,0,3,5,5,3,3,4,4,0,0,
+      4,5,5,3,3,5,4,3,0,0,0,5,0,3,},
+    /*default*/{0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,
+      0,0,0,0,0,0,0,0,},
+  };
+
+  /** access to parse action table as comb vectors */
+  public short[][] action_comb_table() {return _action_comb;}
+
   /** reduce_goto table */
   protected static final short[][] _reduce_table = {
-    /*0*/{1,5,2,3,3,4,-1,-1},
-    /*1*/{3,23,-1,-1},
+    /*0*/{1,5,2,1,3,6,-1,-1},
+    /*1*/{-1,-1},
     /*2*/{-1,-1},
-    /*3*/{-1,-1},
-    /*4*/{4,21,-1,-1},
-    /*5*/{2,19,3,4,-1,-1},
-    /*6*/{3,7,-1,-1},
-    /*7*/{-1,-1},
-    /*8*/{3,18,-1,-1},
-    /*9*/{3,17,-1,-1},
-    /*10*/{-1,-1},
-    /*11*/{3,16,-1,-1},
-    /*12*/{3,15,-1,-1},
-    /*13*/{3,14,-1,-1},
+    /*3*/{3,23,-1,-1},
+    /*4*/{3,21,-1,-1},
+    /*5*/{2,19,3,6,-1,-1},
+    /*6*/{4,8,-1,-1},
+    /*7*/{3,18,-1,-1},
+    /*8*/{-1,-1},
+    /*9*/{3,16,-1,-1},
+    /*10*/{3,15,-1,-1},
+    /*11*/{3,14,-1,-1},
+    /*12*/{3,13,-1,-1},
+    /*13*/{-1,-1},
     /*14*/{-1,-1},
     /*15*/{-1,-1},
     /*16*/{-1,-1},
@@ -84,6 +113,19 @@ public class parser extends java_cup.runtime.lr_parser {
   /** access to reduce_goto table */
   public short[][] reduce_table() {return _reduce_table;}
 
+  /** reduce_goto table as comb vectors */
+  protected static final short[][] _reduce_comb = {
+    /*base*/{0,0,0,3,4,2,4,6,0,7,8,9,10,0,0,0,
+      0,0,0,0,0,0,0,0,},
+    /*check*/{-1,0,0,0,5,5,3,4,6,7,9,10,11,12,-1,},
+    /*value*/{0,5,1,6,19,6,23,21,8,18,16,15,14,13,0,},
+    /*default*/{-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,
+      -1,-1,-1,-1,-1,-1,-1,-1,},
+  };
+
+  /** access to reduce_goto table as comb vectors */
+  public short[][] reduce_comb_table() {return _reduce_comb;}
+
   /** instance of action encapsulation class */
   protected CUP$parser$actions action_obj;
 
@@ -1,40 +1,108 @@
 package ErrorMsg;
 
 public class ErrorMsg {
-  private LineList linePos = new LineList(-1,null);
+  // linePos[i] is the offset of the newline that ends line i, so line i+1
+  // starts right after it; linePos[0] = -1 stands for the start of line 1.
+  // Newlines normally arrive in increasing order; one that is reported
+  // again (e.g. by a lexer resumed from a checkpoint) is slotted in to
+  // keep it sorted.
+  private int linePos[] = new int[256];
   private int lineNum=1;
   private String filename;
+  private java.io.PrintStream out;
   public boolean anyErrors;
 
   public ErrorMsg(String f) {
+      this(f, System.err);
+  }
+
+  public ErrorMsg(String f, java.io.PrintStream o) {
       filename=f;
+      out=o;
+      linePos[0]=-1;
   }
 
   public void newline(int pos) {
+     int i = lineNum;
+     if (linePos[lineNum-1] >= pos) {
+       i = find(pos) + 1;
+       if (linePos[i] == pos)
+	 return;
+     }
+     if (lineNum == linePos.length) {
+       int bigger[] = new int[2*linePos.length];
+       System.arraycopy(linePos, 0, bigger, 0, lineNum);
+       linePos = bigger;
+     }
+     System.arraycopy(linePos, i, linePos, i+1, lineNum-i);
+     linePos[i] = pos;
      lineNum++;
-     linePos = new LineList(pos,linePos);
   }
+
+  /** Forgets the newlines at offset pos and after and returns them in
+      order, so that the text from pos on can be lexed again; restore()
+      puts back the ones the new lex does not reach. */
+  public int[] forget(int pos) {
+     int from = find(pos) + 1;
+     int saved[] = new int[lineNum - from];
+     System.arraycopy(linePos, from, saved, 0, saved.length);
+     lineNum = from;
+     return saved;
+  }
+
+  /** Appends the newlines saved[from..], each moved by delta; they must
+      all follow the newlines seen so far. */
+  public void restore(int saved[], int from, int delta) {
+     int n = saved.length - from;
+     if (lineNum + n > linePos.length) {
+       int bigger[] = new int[Math.max(2*linePos.length, lineNum + n)];
+       System.arraycopy(linePos, 0, bigger, 0, lineNum);
+       linePos = bigger;
+     }
+     for (int i = from; i < saved.length; i++)
+       linePos[lineNum++] = saved[i] + delta;
+  }
+
+  /* Index of the last line start before pos, or -1 if there is none. */
+  private int find(int pos) {
+     int lo = 0, hi = lineNum - 1, found = -1;
+     while (lo <= hi) {
+       int mid = (lo + hi) >>> 1;
+       if (linePos[mid] < pos) {
+	 found = mid;
+	 lo = mid + 1;
+       }
+       else
+	 hi = mid - 1;
+     }
+     return found;
+  }
+
+  /** Line of character offset pos, counting from 1; 0 if pos precedes the input. */
+  public int line(int pos) {
+     return find(pos) + 1;
+  }
+
+  /** Column of character offset pos, counting from 1; 0 if pos precedes the input. */
+  public int column(int pos) {
+     int i = find(pos);
+     return i < 0 ? 0 : pos - linePos[i];
+  }
+
+  /** Number of lines seen so far. */
+  public int lines() {
+     return lineNum;
+  }
+
   public void error(int pos, String msg) {
-	int n = lineNum;
-        LineList p = linePos;
+	int i = find(pos);
 	String sayPos="0.0";
 
 	anyErrors=true;
 
-        while (p!=null) {
-          if (p.head<pos) {
-	     sayPos = ":" + String.valueOf(n) + "." + String.valueOf(pos-p.head);
-	     break;
-          }
-	  p=p.tail; n--;
-        }
+	if (i >= 0)
+	  sayPos = ":" + String.valueOf(i+1) + "." + String.valueOf(pos-linePos[i]);
 
-	System.err.println(filename + ":" + sayPos + ": " + msg);
+	out.println(filename + ":" + sayPos + ": " + msg);
   }
 }
-
-class LineList {
-  int head;
-  LineList tail;
-  LineList(int h, LineList t) {head=h; tail=t;}
-}
@@ -0,0 +1,238 @@
+package Parse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Throughput benchmark for Yylex.nextToken().
+ *
+ * Lexes every .tig file in a corpus directory (tiger/testcases by default),
+ * then synthetic inputs built by repeating that corpus up to each requested
+ * size, and reports tokens/sec, MB/sec and bytes allocated per token.
+ * Each measurement runs a number of warmup passes before the timed ones so
+ * the numbers are for compiled code; keep the output of a run on a known
+ * revision as the baseline to compare lexer changes against.
+ *
+ * -cursor drives the lexer through TokenCursor.next() instead of
+ * nextToken().
+ *
+ * usage: java Parse.Bench [-mmap] [-cursor] [-warmup n] [-runs n] [-sizes 1M,16M,...] [dir]
+ *
+ * The default sizes are 1M and 16M.  Larger ones (e.g. -sizes 256M,1G)
+ * take (warmup + runs) passes each, and above a few hundred MB need a
+ * larger heap (-Xmx) in -mmap mode, since the whole file is held as chars.
+ */
+public class Bench {
+
+  static boolean mmap = false;
+  static boolean cursor = false;
+  static int warmup = 5;
+  static int runs = 10;
+  static String sizes = "1M,16M";
+
+  public static void main(String argv[]) throws IOException {
+    String dir = "../tiger/testcases";
+    for (int i = 0; i < argv.length; ++i) {
+      if (argv[i].equals("-mmap"))
+	mmap = true;
+      else if (argv[i].equals("-cursor"))
+	cursor = true;
+      else if (argv[i].equals("-warmup") && i + 1 < argv.length)
+	warmup = Integer.parseInt(argv[++i]);
+      else if (argv[i].equals("-runs") && i + 1 < argv.length)
+	runs = Integer.parseInt(argv[++i]);
+      else if (argv[i].equals("-sizes") && i + 1 < argv.length)
+	sizes = argv[++i];
+      else if (argv[i].startsWith("-"))
+	usage();
+      else
+	dir = argv[i];
+    }
+
+    String list[] = sizes.split(",");
+    long bytes[] = new long[list.length];
+    for (int i = 0; i < list.length; ++i) {
+      list[i] = list[i].trim();
+      try {
+	bytes[i] = parseSize(list[i]);
+      } catch (RuntimeException e) {
+	System.err.println("Bad size: " + list[i]);
+	usage();
+      }
+    }
+
+    File corpus[] = corpus(new File(dir));
+    System.out.println("mode: " + (mmap ? "mmap" : "stream")
+		       + (cursor ? ", cursor" : "")
+		       + ", warmup " + warmup + ", runs " + runs);
+    System.out.println(header());
+    for (int i = 0; i < corpus.length; ++i) {
+      report(corpus[i].getName(), new File[] { corpus[i] });
+    }
+    report("corpus total", corpus);
+
+    for (int i = 0; i < list.length; ++i) {
+      File f = synthesize(corpus, bytes[i]);
+      try {
+	report("synthetic " + list[i], new File[] { f });
+      } finally {
+	f.delete();
+      }
+    }
+  }
+
+  static void usage() {
+    System.err.println("usage: java Parse.Bench [-mmap] [-cursor] [-warmup n] [-runs n]"
+		       + " [-sizes 1M,16M,...] [dir]");
+    System.exit(1);
+  }
+
+  /* The .tig files in dir that lex through to EOF.  Test cases that
+     deliberately contain lexical errors (or e.g. an INT that overflows)
+     would abort a pass, so they are left out and listed. */
+  static File[] corpus(File dir) throws IOException {
+    File all[] = dir.listFiles();
+    if (all == null)
+      throw new IOException("Not a directory: " + dir);
+    java.util.Arrays.sort(all);
+    java.util.Vector<File> good = new java.util.Vector<File>();
+    for (int i = 0; i < all.length; ++i) {
+      if (!all[i].getName().endsWith(".tig"))
+	continue;
+      try {
+	lex(all[i]);
+	good.addElement(all[i]);
+      } catch (Error e) {
+	System.out.println("skipping " + all[i].getName() + ": " + e.getMessage());
+      } catch (RuntimeException e) {
+	System.out.println("skipping " + all[i].getName() + ": " + e);
+      }
+    }
+    File res[] = new File[good.size()];
+    good.copyInto(res);
+    return res;
+  }
+
+  /* Repeat the corpus into a temporary file of at least size bytes. */
+  static File synthesize(File corpus[], long size) throws IOException {
+    byte texts[][] = new byte[corpus.length][];
+    for (int i = 0; i < corpus.length; ++i)
+      texts[i] = java.nio.file.Files.readAllBytes(corpus[i].toPath());
+    File f = File.createTempFile("bench", ".tig");
+    f.deleteOnExit();
+    java.io.OutputStream out =
+      new java.io.BufferedOutputStream(new FileOutputStream(f), 1 << 16);
+    try {
+      long written = 0;
+      for (int i = 0; written < size; i = (i + 1) % texts.length) {
+	out.write(texts[i]);
+	out.write('\n');
+	written += texts[i].length + 1;
+      }
+    } finally {
+      out.close();
+    }
+    return f;
+  }
+
+  /* "16M" etc.; throws NumberFormatException if malformed or not positive. */
+  static long parseSize(String s) {
+    long unit = 1;
+    char c = Character.toUpperCase(s.charAt(s.length() - 1));
+    if (c == 'K') unit = 1L << 10;
+    else if (c == 'M') unit = 1L << 20;
+    else if (c == 'G') unit = 1L << 30;
+    if (unit != 1)
+      s = s.substring(0, s.length() - 1);
+    long n = Long.parseLong(s);
+    if (n <= 0)
+      throw new NumberFormatException(s);
+    return n * unit;
+  }
+
+  /* Lex one file to EOF and return the number of tokens, EOF included. */
+  static long lex(File f) throws IOException {
+    ErrorMsg.ErrorMsg errorMsg = new ErrorMsg.ErrorMsg(f.getPath());
+    FileInputStream inp = new FileInputStream(f);
+    try {
+      Yylex lexer = mmap ? new Yylex(inp.getChannel(), errorMsg)
+			 : new Yylex(inp, errorMsg);
+      long n = 0;
+      if (cursor) {
+	while (lexer.next() != sym.EOF)
+	  ++n;
+	return n + 1;
+      }
+      java_cup.runtime.Symbol tok;
+      do {
+	tok = lexer.nextToken();
+	++n;
+      } while (tok.sym != sym.EOF);
+      return n;
+    } finally {
+      inp.close();
+    }
+  }
+
+  static String header() {
+    return pad("input", 22) + pad("bytes", 14) + pad("tokens", 12)
+      + pad("Mtok/s", 10) + pad("MB/s", 10) + "B/token";
+  }
+
+  static void report(String name, File files[]) throws IOException {
+    long bytes = 0;
+    for (int i = 0; i < files.length; ++i)
+      bytes += files[i].length();
+
+    long tokens = 0;
+    for (int i = 0; i < warmup; ++i)
+      tokens = pass(files);
+
+    long alloc0 = allocatedBytes();
+    long t0 = System.nanoTime();
+    for (int i = 0; i < runs; ++i)
+      pass(files);
+    long nanos = System.nanoTime() - t0;
+    long alloc = allocatedBytes() - alloc0;
+
+    double secs = nanos / 1e9;
+    double total = (double)tokens * runs;
+    System.out.println(pad(name, 22) + pad(String.valueOf(bytes), 14)
+		       + pad(String.valueOf(tokens), 12)
+		       + pad(fmt(total / secs / 1e6), 10)
+		       + pad(fmt((double)bytes * runs / secs / (1 << 20)), 10)
+		       + (alloc < 0 ? "n/a" : fmt(alloc / total)));
+  }
+
+  static long pass(File files[]) throws IOException {
+    long n = 0;
+    for (int i = 0; i < files.length; ++i)
+      n += lex(files[i]);
+    return n;
+  }
+
+  /* Bytes allocated so far by this thread, or -1 if the JVM can't tell. */
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean)bean;
+      if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled())
+	return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  static String fmt(double d) {
+    return String.valueOf(Math.round(d * 100) / 100.0);
+  }
+
+  static String pad(String s, int n) {
+    StringBuffer b = new StringBuffer(s);
+    while (b.length() < n)
+      b.append(' ');
+    return b.toString();
+  }
+}
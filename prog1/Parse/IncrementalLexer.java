@@ -0,0 +1,209 @@
+package Parse;
+
+/**
+ * Keeps the token list of an edited document up to date without lexing it
+ * all again.
+ *
+ * Every token is stored with the lexer state right after it (Yylex.state():
+ * YYINITIAL, STRING or COMMENT, plus the comment depth).  On an edit, lexing
+ * restarts after the last token that ends before the edit, in that token's
+ * state, and stops as soon as a new token ends where an old one did (moved
+ * by the edit) in the same state: from there on the lexer would see the
+ * same text in the same state, so the old tokens are kept and only their
+ * offsets move.  Lexing work is therefore proportional to the edit and the
+ * tokens it disturbs, not to the document.
+ *
+ * The restart point relies on the Tiger rules never looking more than one
+ * character past the end of a token, which holds for every rule in
+ * Tiger.lex.
+ *
+ * Newlines are handled the same way: the ErrorMsg forgets those from the
+ * restart point on, the lexer reports the ones in the re-lexed stretch
+ * (a newline inside a string is not a line break, so an edit can change
+ * that far from itself), and the rest are put back, moved.  All lexers
+ * share one NameTable, so an identifier keeps its canonical value across
+ * edits.
+ */
+final class IncrementalLexer {
+  private ErrorMsg.ErrorMsg errorMsg;
+  private NameTable names = new NameTable();
+  private char text[];
+  private int length;
+
+  // Tokens in order, EOF last, and the lexer state after each of them
+  private java_cup.runtime.Symbol toks[] = new java_cup.runtime.Symbol[64];
+  private int states[] = new int[64];
+  private int count = 0;
+
+  // Token range [changedFrom, changedTo) produced by the last lex
+  private int changedFrom, changedTo;
+
+  IncrementalLexer(String s, ErrorMsg.ErrorMsg e) throws java.io.IOException {
+    errorMsg = e;
+    text = s.toCharArray();
+    length = text.length;
+    relex(-1, text, length, 0, 0, 0);
+  }
+
+  /** Replaces removed chars at offset with inserted and re-lexes.  If the
+      lexer gives up on the new text, the edit is undone and the exception
+      passed on. */
+  void edit(int offset, int removed, String inserted) throws java.io.IOException {
+    if (offset < 0 || removed < 0 || offset + removed > length)
+      throw new IllegalArgumentException("Bad edit: " + offset + "+" + removed
+					 + " in " + length + " chars");
+    int ins = inserted.length();
+    int delta = ins - removed;
+    String old = new String(text, offset, removed);
+
+    // Last token that ends before the edit, with one character to spare
+    // for the lookahead that ended it; never EOF, which is always last
+    int lo = 0, hi = count - 2, r = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (toks[mid].right < offset) {
+	r = mid;
+	lo = mid + 1;
+      }
+      else
+	hi = mid - 1;
+    }
+    int start = r < 0 ? 0 : toks[r].right;
+    int saved[] = errorMsg.forget(start);
+    splice(offset, removed, inserted);
+    boolean done = false;
+    try {
+      int end = relex(r, text, length, offset + ins, offset + removed, delta);
+      int i = 0;
+      while (i < saved.length && saved[i] + delta < end)
+	++i;
+      errorMsg.restore(saved, i, delta);
+      done = true;
+    } finally {
+      if (!done) {
+	splice(offset, ins, old);
+	errorMsg.forget(start);
+	errorMsg.restore(saved, 0, 0);
+      }
+    }
+  }
+
+  private void splice(int offset, int removed, String inserted) {
+    int ins = inserted.length();
+    char t[] = text;
+    if (length + ins - removed > t.length) {
+      t = new char[Math.max(2 * t.length, length + ins - removed)];
+      System.arraycopy(text, 0, t, 0, offset);
+    }
+    System.arraycopy(text, offset + removed, t, offset + ins,
+		     length - offset - removed);
+    inserted.getChars(0, ins, t, offset);
+    text = t;
+    length += ins - removed;
+  }
+
+  /* Lex t[0..len) from the end of token r, in its state, and splice the
+     result in.  Old tokens that end at or after oldEnd and whose end moved
+     by delta lines up with a new token that ends at or after newEnd are
+     candidates for resynchronisation.  Returns the offset where lexing
+     stopped: the end of the token it resynchronised on, or len. */
+  private int relex(int r, char t[], int len, int newEnd, int oldEnd, int delta)
+    throws java.io.IOException {
+    int start = r < 0 ? 0 : toks[r].right;
+    int state = r < 0 ? 0 : states[r];
+    Yylex lexer = new Yylex(t, start, len, errorMsg, state, names);
+
+    java_cup.runtime.Symbol fresh[] = new java_cup.runtime.Symbol[16];
+    int freshStates[] = new int[16];
+    int n = 0;
+    int j = r + 1;	// next old token that could line up
+    int resync = -1;
+    while (true) {
+      java_cup.runtime.Symbol tok = lexer.nextToken();
+      if (n == fresh.length) {
+	java_cup.runtime.Symbol f[] = new java_cup.runtime.Symbol[2 * n];
+	int fs[] = new int[2 * n];
+	System.arraycopy(fresh, 0, f, 0, n);
+	System.arraycopy(freshStates, 0, fs, 0, n);
+	fresh = f;
+	freshStates = fs;
+      }
+      fresh[n] = tok;
+      freshStates[n++] = lexer.state();
+      if (tok.sym == sym.EOF)
+	break;
+      if (tok.right < newEnd)
+	continue;
+      while (j < count && toks[j].right + delta < tok.right)
+	++j;
+      if (j < count && toks[j].sym != sym.EOF && toks[j].right >= oldEnd
+	  && toks[j].right + delta == tok.right && states[j] == freshStates[n-1]) {
+	resync = j;
+	break;
+      }
+    }
+
+    // tokens 0..r, then fresh, then the old tail after resync, moved
+    int tail = resync < 0 ? 0 : count - resync - 1;
+    int total = r + 1 + n + tail;
+    java_cup.runtime.Symbol res[] = toks;
+    int resStates[] = states;
+    if (total > toks.length) {
+      res = new java_cup.runtime.Symbol[Math.max(2 * toks.length, total)];
+      resStates = new int[res.length];
+      System.arraycopy(toks, 0, res, 0, r + 1);
+      System.arraycopy(states, 0, resStates, 0, r + 1);
+    }
+    if (tail > 0) {
+      System.arraycopy(toks, resync + 1, res, r + 1 + n, tail);
+      System.arraycopy(states, resync + 1, resStates, r + 1 + n, tail);
+    }
+    System.arraycopy(fresh, 0, res, r + 1, n);
+    System.arraycopy(freshStates, 0, resStates, r + 1, n);
+    for (int i = r + 1 + n; i < total; i++) {
+      res[i].left += delta;
+      res[i].right += delta;
+    }
+    for (int i = total; i < count; i++)
+      res[i] = null;
+    toks = res;
+    states = resStates;
+    count = total;
+    changedFrom = r + 1;
+    changedTo = r + 1 + n;
+    return resync < 0 ? len : fresh[n - 1].right;
+  }
+
+  /** Number of tokens, EOF included. */
+  int size() {
+    return count;
+  }
+
+  java_cup.runtime.Symbol token(int i) {
+    if (i >= count)
+      throw new IndexOutOfBoundsException(i + " >= " + count);
+    return toks[i];
+  }
+
+  /** Lexer state right after token i. */
+  int state(int i) {
+    if (i >= count)
+      throw new IndexOutOfBoundsException(i + " >= " + count);
+    return states[i];
+  }
+
+  /** First token produced by the last edit (or the constructor). */
+  int changedFrom() {
+    return changedFrom;
+  }
+
+  /** One past the last token produced by the last edit; the tokens from
+      here on are old ones, moved to their new offsets. */
+  int changedTo() {
+    return changedTo;
+  }
+
+  String text() {
+    return new String(text, 0, length);
+  }
+}
@@ -0,0 +1,57 @@
+package Parse;
+
+/**
+ * Immutable snapshot of everything Yylex carries from one token to the
+ * next, taken with Yylex.checkpoint() at a token boundary.  A lexer built
+ * with Yylex(reader, errorMsg, checkpoint) over the input from offset on
+ * continues exactly where the captured one would have, so lexing can be
+ * paused and resumed on another chunk of input or another thread, and
+ * checkpoints can be cached, e.g. one per line.
+ *
+ * For chunked input, keep the text from the last checkpoint's offset:
+ * the token that straddles the end of a chunk is lexed again from there
+ * once the next chunk has arrived.
+ */
+final class LexCheckpoint {
+  /** Offset in the input at which the next token starts. */
+  final int offset;
+  /** Yylex lexical state: YYINITIAL, STRING or COMMENT. */
+  final int lexicalState;
+  final int commentDepth;
+  final boolean instring;
+  /** Contents of the string literal being read, or null outside one. */
+  final String buffer;
+  final boolean atBol;
+
+  LexCheckpoint(int offset, int lexicalState, int commentDepth,
+		boolean instring, String buffer, boolean atBol) {
+    this.offset = offset;
+    this.lexicalState = lexicalState;
+    this.commentDepth = commentDepth;
+    this.instring = instring;
+    this.buffer = buffer;
+    this.atBol = atBol;
+  }
+
+  /** Same lexer state, wherever it was taken. */
+  boolean sameState(LexCheckpoint c) {
+    return lexicalState == c.lexicalState && commentDepth == c.commentDepth
+      && instring == c.instring && atBol == c.atBol
+      && (buffer == null ? c.buffer == null : buffer.equals(c.buffer));
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof LexCheckpoint && offset == ((LexCheckpoint)o).offset
+      && sameState((LexCheckpoint)o);
+  }
+
+  public int hashCode() {
+    return ((offset * 31 + lexicalState) * 31 + commentDepth) * 4
+      + (instring ? 2 : 0) + (atBol ? 1 : 0);
+  }
+
+  public String toString() {
+    return "LexCheckpoint(" + offset + ", state " + lexicalState
+      + ", depth " + commentDepth + (instring ? ", in string" : "") + ")";
+  }
+}
@@ -3,31 +3,172 @@ import java.io.PrintWriter;
 
 public class Main {
 
+  static boolean mmap = false;
+  static int jobs = 1;
+  static boolean binary = false;
+
   public static void main(String argv[]) throws java.io.IOException {
-    for (int i = 0; i < argv.length; ++i) {
-      String filename = argv[i];
-      if (argv.length > 1)
-	System.out.println("***Processing: " + filename);
-      ErrorMsg.ErrorMsg errorMsg = new ErrorMsg.ErrorMsg(filename);
-      java.io.InputStream inp=new java.io.FileInputStream(filename);
-      Lexer lexer = new Yylex(inp,errorMsg);
+    int first = 0;
+    while (first < argv.length && argv[first].startsWith("-")) {
+      if (argv[first].equals("-mmap"))
+	mmap = true;
+      else if (argv[first].equals("-binary"))
+	binary = true;
+      else if (argv[first].equals("-j") && first + 1 < argv.length) {
+	jobs = Integer.parseInt(argv[++first]);
+	if (jobs <= 0)
+	  jobs = Runtime.getRuntime().availableProcessors();
+      }
+      else
+	usage();
+      ++first;
+    }
+    String files[] = new String[argv.length - first];
+    System.arraycopy(argv, first, files, 0, files.length);
+
+    java.io.OutputStream stdout =
+      new java.io.FileOutputStream(java.io.FileDescriptor.out);
+    if (jobs > 1 && files.length > 1)
+      parallel(files, stdout);
+    else if (jobs > 1 && files.length == 1)
+      chunked(files[0], new TokenWriter(stdout, binary));
+    else {
+      TokenWriter out = new TokenWriter(stdout, binary);
+      for (int i = 0; i < files.length; ++i)
+	lex(files[i], files.length > 1, out, System.err);
+    }
+  }
+
+  static void usage() {
+    System.err.println("usage: java Parse.Main [-mmap] [-binary] [-j jobs] file.tig ...");
+    System.exit(1);
+  }
+
+  /* Dump the tokens of one file to out, reporting lexical errors to err.
+     out is flushed before returning, also when the lexer gives up. */
+  static void lex(String filename, boolean header,
+		  TokenWriter out, java.io.PrintStream err)
+    throws java.io.IOException {
+    java.io.FileInputStream inp = null;
+    try {
+      if (header)
+	out.header(filename);
+      ErrorMsg.ErrorMsg errorMsg = new ErrorMsg.ErrorMsg(filename, err);
+      inp=new java.io.FileInputStream(filename);
+      Lexer lexer = mmap ? new Yylex(inp.getChannel(),errorMsg)
+			 : new Yylex(inp,errorMsg);
       java_cup.runtime.Symbol tok;
 
       do {
-	 String extra = "";
          tok=lexer.nextToken();
-	 switch (tok.sym) {
-	 case sym.ID:     extra = "\t$" + tok.value; break;
-	 case sym.INT:    extra = "\t#" + tok.value; break;
-	 case sym.STRING: extra = " \"" + tok.value + "\""; break;
-	 }
-	 System.out.println(symnames[tok.sym] + " " + tok.left + extra);
+	 out.token(tok);
       } while (tok.sym != sym.EOF);
+    } finally {
+      out.flush();
+      if (inp != null)
+	inp.close();
+    }
+  }
+
+  /* Lex the files on a pool of jobs threads.  Each file gets its own lexer
+     and ErrorMsg and is dumped into memory; the dumps are written out whole
+     and in argv order, so the output matches a sequential run.  At most
+     2*jobs finished or running files are held at once.  The first file
+     that fails stops the run once everything before it has been written. */
+  static void parallel(String files[], java.io.OutputStream stdout)
+    throws java.io.IOException {
+    java.util.concurrent.ExecutorService pool =
+      java.util.concurrent.Executors.newFixedThreadPool(jobs);
+    java.util.LinkedList<java.util.concurrent.Future<Task.Result>> pending =
+      new java.util.LinkedList<java.util.concurrent.Future<Task.Result>>();
+    try {
+      int next = 0;
+      while (next < files.length || !pending.isEmpty()) {
+	while (next < files.length && pending.size() < 2 * jobs)
+	  pending.addLast(pool.submit(new Task(files[next++])));
+	Task.Result r = await(pending.removeFirst());
+	stdout.write(r.out);
+	stdout.flush();
+	System.err.write(r.err);
+	System.err.flush();
+	if (r.failure instanceof java.io.IOException)
+	  throw (java.io.IOException)r.failure;
+	if (r.failure instanceof RuntimeException)
+	  throw (RuntimeException)r.failure;
+	if (r.failure != null)
+	  throw (Error)r.failure;
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 
+  /* Lex a single file in chunks on jobs threads (see ParallelLexer). */
+  static void chunked(String filename, TokenWriter out) throws java.io.IOException {
+    ErrorMsg.ErrorMsg errorMsg = new ErrorMsg.ErrorMsg(filename);
+    java.io.FileInputStream inp=new java.io.FileInputStream(filename);
+    java.util.concurrent.ExecutorService pool =
+      java.util.concurrent.Executors.newFixedThreadPool(jobs);
+    try {
+      char text[] = ParallelLexer.read(inp.getChannel());
+      ParallelLexer.lex(text, text.length, jobs, pool, errorMsg, out);
+    } finally {
+      pool.shutdownNow();
+      out.flush();
       inp.close();
     }
   }
 
+  /* Wait for f, through interrupts; the interrupt status is set again
+     afterwards, not in the loop, where it would make get() throw at once. */
+  static Task.Result await(java.util.concurrent.Future<Task.Result> f) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+	try {
+	  return f.get();
+	} catch (InterruptedException e) {
+	  interrupted = true;
+	} catch (java.util.concurrent.ExecutionException e) {
+	  throw new Error(e.getCause());
+	}
+      }
+    } finally {
+      if (interrupted)
+	Thread.currentThread().interrupt();
+    }
+  }
+
+  static class Task implements java.util.concurrent.Callable<Task.Result> {
+    static class Result {
+      byte out[], err[];
+      Throwable failure;
+    }
+
+    String filename;
+
+    Task(String f) {
+      filename = f;
+    }
+
+    public Result call() {
+      java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+      java.io.ByteArrayOutputStream err = new java.io.ByteArrayOutputStream();
+      TokenWriter o = new TokenWriter(out, binary);
+      java.io.PrintStream e = new java.io.PrintStream(err);
+      Result r = new Result();
+      try {
+	lex(filename, true, o, e);
+      } catch (Throwable t) {
+	r.failure = t;
+      }
+      e.flush();
+      r.out = out.toByteArray();
+      r.err = err.toByteArray();
+      return r;
+    }
+  }
+
   static String symnames[] = new String[100];
   static {
      
@@ -0,0 +1,85 @@
+package Parse;
+
+/**
+ * Interning table for identifiers, keyed directly off a slice of the
+ * lexer's char buffer.  Every occurrence of a name maps to the same String
+ * object, and a lookup that hits builds no temporary String, so identifier
+ * values can be compared with ==.
+ *
+ * Open addressing with linear probing; hashes are String.hashCode() values
+ * and are kept next to the names so most mismatches never touch the chars.
+ * Not synchronized: share a table between lexers on one thread only.
+ */
+final class NameTable {
+  private String names[];
+  private int hashes[];
+  private int count;
+
+  NameTable() {
+    this(256);
+  }
+
+  NameTable(int capacity) {
+    int n = 16;
+    while (n < 2 * capacity)
+      n <<= 1;
+    names = new String[n];
+    hashes = new int[n];
+  }
+
+  /** The canonical String for buf[off..off+len). */
+  String intern(char buf[], int off, int len) {
+    int h = 0;
+    for (int i = 0; i < len; i++)
+      h = 31 * h + buf[off + i];
+
+    int mask = names.length - 1;
+    int i = spread(h) & mask;
+    for (String s; (s = names[i]) != null; i = (i + 1) & mask) {
+      if (hashes[i] == h && matches(s, buf, off, len))
+	return s;
+    }
+
+    String s = new String(buf, off, len);
+    names[i] = s;
+    hashes[i] = h;
+    if (++count * 2 > names.length)
+      grow();
+    return s;
+  }
+
+  /** Number of distinct names seen. */
+  int size() {
+    return count;
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean matches(String s, char buf[], int off, int len) {
+    if (s.length() != len)
+      return false;
+    for (int i = 0; i < len; i++)
+      if (s.charAt(i) != buf[off + i])
+	return false;
+    return true;
+  }
+
+  private void grow() {
+    String oldNames[] = names;
+    int oldHashes[] = hashes;
+    names = new String[2 * oldNames.length];
+    hashes = new int[names.length];
+    int mask = names.length - 1;
+    for (int j = 0; j < oldNames.length; j++) {
+      if (oldNames[j] == null)
+	continue;
+      int i = spread(oldHashes[j]) & mask;
+      while (names[i] != null)
+	i = (i + 1) & mask;
+      names[i] = oldNames[j];
+      hashes[i] = oldHashes[j];
+    }
+  }
+}
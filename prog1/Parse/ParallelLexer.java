@@ -0,0 +1,311 @@
+package Parse;
+
+/**
+ * Lexes one large input on several threads.
+ *
+ * The text is cut into chunks at line starts and every chunk is lexed
+ * speculatively and in parallel, as if it started in YYINITIAL, until a
+ * token ends at or past the start of the next chunk.  The runs are then
+ * stitched together in order.  The true lexer state entering a chunk is
+ * where the previous run ended (offset and Yylex.state()); if the chunk's
+ * run passed through that same boundary, everything after it is taken as
+ * is.  Otherwise the guess was wrong, e.g. the chunk starts inside a
+ * string or comment, and the chunk is lexed again from the true state,
+ * only until it falls back into step with the speculative run.
+ *
+ * Chunks are at least jobs and at most about CHUNK chars, and no more than
+ * 2*jobs of them are lexed or waiting to be stitched at a time, so the
+ * tokens held in memory do not grow with the file.
+ *
+ * Offsets are absolute throughout, since every run lexes the shared text
+ * at its own position.  Diagnostics are recorded per run and replayed into
+ * the caller's ErrorMsg for the stretches that were kept, so they come out
+ * once each and in order.  A run that throws (a lexical error, or e.g. an
+ * INT that overflows because the chunk really starts inside a string) is
+ * only a failed guess until the true re-lex throws too.
+ */
+final class ParallelLexer {
+
+  /* Diagnostics of one run, held back until we know which part is kept.
+     A null message is a newline. */
+  static final class Recorder extends ErrorMsg.ErrorMsg {
+    int pos[] = new int[16];
+    String msg[] = new String[16];
+    int n = 0;
+
+    Recorder() {
+      super(null, null);
+    }
+
+    public void newline(int p) {
+      add(p, null);
+    }
+
+    public void error(int p, String m) {
+      anyErrors = true;
+      add(p, m);
+    }
+
+    private void add(int p, String m) {
+      if (n == pos.length) {
+	int np[] = new int[2 * n];
+	String nm[] = new String[2 * n];
+	System.arraycopy(pos, 0, np, 0, n);
+	System.arraycopy(msg, 0, nm, 0, n);
+	pos = np;
+	msg = nm;
+      }
+      pos[n] = p;
+      msg[n++] = m;
+    }
+
+    /* Pass on everything at offsets from..to-1 */
+    void replay(ErrorMsg.ErrorMsg e, int from, int to) {
+      for (int i = 0; i < n; i++) {
+	if (pos[i] < from || pos[i] >= to)
+	  continue;
+	if (msg[i] == null)
+	  e.newline(pos[i]);
+	else
+	  e.error(pos[i], msg[i]);
+      }
+    }
+  }
+
+  /* The tokens lexed from one starting point, each with the boundary
+     after it: ends[i] is where the next token starts, states[i] the
+     lexer state there. */
+  static final class Run {
+    int startOffset, startState;
+    java_cup.runtime.Symbol toks[] = new java_cup.runtime.Symbol[256];
+    int ends[] = new int[256];
+    int states[] = new int[256];
+    int n = 0;
+    boolean eof = false;
+    int resync = -1;		// index in the run it fell into step with
+    Throwable failure;
+    Recorder events = new Recorder();
+
+    void add(java_cup.runtime.Symbol tok, int state) {
+      if (n == toks.length) {
+	java_cup.runtime.Symbol t[] = new java_cup.runtime.Symbol[2 * n];
+	int e[] = new int[2 * n], s[] = new int[2 * n];
+	System.arraycopy(toks, 0, t, 0, n);
+	System.arraycopy(ends, 0, e, 0, n);
+	System.arraycopy(states, 0, s, 0, n);
+	toks = t;
+	ends = e;
+	states = s;
+      }
+      toks[n] = tok;
+      ends[n] = tok.right;
+      states[n++] = state;
+    }
+
+    int lastEnd() {
+      return n == 0 ? startOffset : ends[n - 1];
+    }
+
+    /* Index of the boundary (offset, state) in this run: -1 for where it
+       started, -2 if it never passed through it. */
+    int find(int offset, int state) {
+      if (offset == startOffset && state == startState)
+	return -1;
+      int lo = 0, hi = n - 1;
+      while (lo <= hi) {
+	int mid = (lo + hi) >>> 1;
+	if (ends[mid] < offset)
+	  lo = mid + 1;
+	else if (ends[mid] > offset)
+	  hi = mid - 1;
+	else
+	  return states[mid] == state ? mid : -2;
+      }
+      return -2;
+    }
+  }
+
+  /* Lex text[0..len) from (offset, state) until a token ends at or past
+     limit, or EOF; always up to EOF if limit is len.  With a speculative
+     run to compare against, stop early once a boundary matches one of its
+     own (other than its EOF, which is not a boundary to go on from). */
+  static Run run(char text[], int len, int offset, int state, int limit,
+		 Run spec) throws java.io.IOException {
+    Run r = new Run();
+    r.startOffset = offset;
+    r.startState = state;
+    Yylex lexer = new Yylex(text, offset, len, r.events, state);
+    int j = 0;
+    try {
+      while (true) {
+	java_cup.runtime.Symbol tok = lexer.nextToken();
+	r.add(tok, lexer.state());
+	if (tok.sym == sym.EOF) {
+	  r.eof = true;
+	  break;
+	}
+	if (spec != null) {
+	  while (j < spec.n && spec.ends[j] < tok.right)
+	    ++j;
+	  if (j < spec.n && spec.ends[j] == tok.right
+	      && spec.states[j] == r.states[r.n - 1]
+	      && spec.toks[j].sym != sym.EOF) {
+	    r.resync = j;
+	    break;
+	  }
+	}
+	if (tok.right >= limit && limit < len)
+	  break;
+      }
+    } catch (RuntimeException e) {
+      r.failure = e;
+    } catch (Error e) {
+      r.failure = e;
+    }
+    return r;
+  }
+
+  /* Target chunk size in chars, for files much larger than jobs chunks. */
+  static final int CHUNK = 1 << 20;
+
+  /* Chunk starts: 0, then roughly every len/chunks chars, moved forward
+     to the start of a line; len last. */
+  static int[] split(char text[], int len, int chunks) {
+    int starts[] = new int[chunks + 1];
+    int k = 0;
+    for (int i = 1; i < chunks; i++) {
+      int s = Math.max((int)((long)len * i / chunks), starts[k] + 1);
+      while (s < len && text[s - 1] != '\n')
+	++s;
+      if (s < len)
+	starts[++k] = s;
+    }
+    starts[++k] = len;
+    int res[] = new int[k + 1];
+    System.arraycopy(starts, 0, res, 0, k + 1);
+    return res;
+  }
+
+  /** Lexes text[0..len) as chunks on a pool of jobs threads and writes the
+      tokens to out, EOF last.  Each chunk is written as soon as it is
+      stitched, so if the lexer gives up, everything before the error has
+      been written. */
+  static void lex(final char text[], final int len, int jobs,
+		  java.util.concurrent.ExecutorService pool,
+		  ErrorMsg.ErrorMsg errorMsg, TokenWriter out)
+    throws java.io.IOException {
+    jobs = Math.max(jobs, 1);
+    final int starts[] =
+      split(text, len, Math.max(jobs, (int)(((long)len + CHUNK - 1) / CHUNK)));
+    int k = starts.length - 1;
+    java.util.List<java.util.concurrent.Future<Run>> futures =
+      new java.util.ArrayList<java.util.concurrent.Future<Run>>(k);
+
+    Stitch st = new Stitch(errorMsg, out);
+    try {
+      for (int i = 0; i < k && !st.eof; i++) {
+	while (futures.size() < k && futures.size() < i + 2 * jobs) {
+	  final int c = futures.size();
+	  futures.add(pool.submit(new java.util.concurrent.Callable<Run>() {
+	    public Run call() throws java.io.IOException {
+	      return run(text, len, starts[c], 0, starts[c + 1], null);
+	    }
+	  }));
+	}
+	Run spec = await(futures.get(i));
+	futures.set(i, null);
+	if (st.end >= starts[i + 1])
+	  continue;		// the previous run already lexed past it
+	int from = spec.failure == null ? spec.find(st.end, st.state) : -2;
+	if (from != -2) {
+	  st.take(spec, from + 1);
+	  continue;
+	}
+	Run re = run(text, len, st.end, st.state, starts[i + 1],
+		     spec.failure == null ? spec : null);
+	st.take(re, 0);
+	rethrow(re.failure);
+	if (re.resync >= 0)
+	  st.take(spec, re.resync + 1);
+      }
+      if (!st.eof) {
+	// the last token of a chunk reached the end of the text
+	Run re = run(text, len, st.end, st.state, len, null);
+	st.take(re, 0);
+	rethrow(re.failure);
+      }
+    } finally {
+      for (int i = 0; i < futures.size(); i++)
+	if (futures.get(i) != null)
+	  futures.get(i).cancel(true);
+    }
+  }
+
+  static void rethrow(Throwable t) {
+    if (t instanceof RuntimeException)
+      throw (RuntimeException)t;
+    if (t != null)
+      throw (Error)t;
+  }
+
+  /* Where the token stream written so far ends: the true boundary. */
+  static final class Stitch {
+    ErrorMsg.ErrorMsg errorMsg;
+    TokenWriter out;
+    int end = 0, state = 0;
+    boolean eof = false;
+
+    Stitch(ErrorMsg.ErrorMsg e, TokenWriter o) {
+      errorMsg = e;
+      out = o;
+    }
+
+    /* Write r's tokens from index from on, with their diagnostics. */
+    void take(Run r, int from) throws java.io.IOException {
+      int to = r.eof || r.failure != null ? Integer.MAX_VALUE : r.lastEnd();
+      r.events.replay(errorMsg, end, to);
+      for (int i = from; i < r.n; i++)
+	out.token(r.toks[i]);
+      if (r.n > from) {
+	end = r.ends[r.n - 1];
+	state = r.states[r.n - 1];
+      }
+      eof = r.eof;
+    }
+  }
+
+  /* Wait for f, through interrupts (see Main.await()). */
+  static Run await(java.util.concurrent.Future<Run> f) throws java.io.IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+	try {
+	  return f.get();
+	} catch (InterruptedException e) {
+	  interrupted = true;
+	} catch (java.util.concurrent.ExecutionException e) {
+	  if (e.getCause() instanceof java.io.IOException)
+	    throw (java.io.IOException)e.getCause();
+	  throw new Error(e.getCause());
+	}
+      }
+    } finally {
+      if (interrupted)
+	Thread.currentThread().interrupt();
+    }
+  }
+
+  /** The whole file as chars, bytes widened as Latin-1 like Yylex's
+      memory-mapped mode. */
+  static char[] read(java.nio.channels.FileChannel ch) throws java.io.IOException {
+    long size = ch.size();
+    if (size >= Integer.MAX_VALUE)
+      throw new java.io.IOException("File too large to map: " + size + " bytes");
+    java.nio.MappedByteBuffer map =
+      ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+    char text[] = new char[(int)size];
+    for (int i = 0; i < text.length; i++)
+      text[i] = (char)(map.get(i) & 0xff);
+    return text;
+  }
+}
@@ -0,0 +1,132 @@
+package Parse;
+
+/**
+ * A file's tokens stored column by column instead of as Symbol objects.
+ *
+ * Each token takes one byte of kind and three ints: start, end and value.
+ * The value column holds an INT's value itself, an index into the side
+ * table of values for an ID or STRING, and -1 for anything else.  That is
+ * 13 bytes a token against a 32-byte Symbol plus its boxed value, and a
+ * sequential scan walks four dense arrays.  IDs enter the side table as
+ * NameTable-interned Strings and STRINGs as Strings.
+ *
+ * Yylex.fill() loads a buffer without creating any Symbols; symbols()
+ * turns the tokens back into Symbols one at a time, for a parser's scan().
+ */
+final class TokenBuffer {
+  private byte kinds[];
+  private int starts[], ends[], values[];
+  private int count = 0;
+  private Object table[] = new Object[64];
+  private int tableSize = 0;
+
+  TokenBuffer() {
+    this(1024);
+  }
+
+  TokenBuffer(int capacity) {
+    capacity = Math.max(capacity, 16);
+    kinds = new byte[capacity];
+    starts = new int[capacity];
+    ends = new int[capacity];
+    values = new int[capacity];
+  }
+
+  void add(int kind, int start, int end) {
+    put(kind, start, end, -1);
+  }
+
+  void addInt(int kind, int start, int end, int value) {
+    put(kind, start, end, value);
+  }
+
+  void addValue(int kind, int start, int end, Object value) {
+    if (tableSize == table.length) {
+      Object t[] = new Object[2 * tableSize];
+      System.arraycopy(table, 0, t, 0, tableSize);
+      table = t;
+    }
+    table[tableSize] = value;
+    put(kind, start, end, tableSize++);
+  }
+
+  private void put(int kind, int start, int end, int value) {
+    if (count == kinds.length)
+      grow();
+    kinds[count] = (byte)kind;
+    starts[count] = start;
+    ends[count] = end;
+    values[count++] = value;
+  }
+
+  private void grow() {
+    int n = 2 * count;
+    byte k[] = new byte[n];
+    int s[] = new int[n], e[] = new int[n], v[] = new int[n];
+    System.arraycopy(kinds, 0, k, 0, count);
+    System.arraycopy(starts, 0, s, 0, count);
+    System.arraycopy(ends, 0, e, 0, count);
+    System.arraycopy(values, 0, v, 0, count);
+    kinds = k;
+    starts = s;
+    ends = e;
+    values = v;
+  }
+
+  /** Number of tokens, EOF included once the buffer is filled. */
+  int size() {
+    return count;
+  }
+
+  int kind(int i) {
+    return kinds[i];
+  }
+
+  int start(int i) {
+    return starts[i];
+  }
+
+  int end(int i) {
+    return ends[i];
+  }
+
+  /** Value of token i if it is an INT. */
+  int intValue(int i) {
+    return values[i];
+  }
+
+  /** Value of token i as Symbol.value would carry it. */
+  Object value(int i) {
+    switch (kinds[i]) {
+    case sym.INT:
+      return Integer.valueOf(values[i]);
+    case sym.ID:
+    case sym.STRING:
+      return table[values[i]];
+    default:
+      return null;
+    }
+  }
+
+  java_cup.runtime.Symbol symbol(int i) {
+    return new java_cup.runtime.Symbol(kinds[i], starts[i], ends[i], value(i));
+  }
+
+  /**
+   * The tokens from the first on as a Lexer, creating each Symbol only when
+   * it is asked for; a parser's scan() can simply return nextToken().
+   * After the last token it keeps returning EOF.
+   */
+  Lexer symbols() {
+    return new Lexer() {
+      int next = 0;
+
+      public java_cup.runtime.Symbol nextToken() {
+	if (next < count)
+	  return symbol(next++);
+	int at = count == 0 ? 0 : ends[count - 1];
+	return new java_cup.runtime.Symbol(sym.EOF, at, at, null);
+      }
+    };
+  }
+}
@@ -0,0 +1,32 @@
+package Parse;
+
+/**
+ * Allocation-free alternative to Lexer.nextToken().
+ *
+ * next() steps to the following token and the accessors describe it with
+ * primitives; nothing is allocated per token.  text() is a view over the
+ * lexer's own buffer and, like the other accessors, only describes the
+ * current token: it is overwritten by the next call to next().
+ */
+interface TokenCursor {
+  /** Advances to the next token and returns its kind, a sym constant. */
+  public int next() throws java.io.IOException;
+
+  /** Kind of the current token; sym.EOF once the input is exhausted. */
+  public int kind();
+
+  /** Start offset of the current token, as Symbol.left. */
+  public int start();
+
+  /** End offset of the current token, as Symbol.right. */
+  public int end();
+
+  /** Value of the current token if it is an INT. */
+  public int intValue();
+
+  /**
+   * Text of the current token: the decoded contents for a STRING, the
+   * lexeme otherwise.  Call toString() on it to keep it.
+   */
+  public CharSequence text();
+}
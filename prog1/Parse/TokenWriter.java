@@ -0,0 +1,224 @@
+package Parse;
+
+/**
+ * Output stage for token dumps.  Tokens are encoded straight into a
+ * reusable byte buffer that is handed to the underlying stream only when
+ * full or on flush(), so no per-token Strings are built and the stream is
+ * not locked or flushed per line.
+ *
+ * The text format is the one Main has always printed, one token a line:
+ *
+ *	NAME left		e.g. "COMMA 12"
+ *	ID left\t$name		INT left\t#value	STRING left "text"
+ *
+ * The binary format (-binary) is for downstream tools.  All integers are
+ * big-endian, as read by java.io.DataInputStream, and text is UTF-8 with
+ * a u4 byte-length prefix:
+ *
+ *	file header:	u1 0xFF, u4 length, name
+ *	token:		u1 sym, i4 left, i4 right, then
+ *			for ID and STRING: u4 length, text
+ *			for INT: i4 value
+ *
+ * A file's tokens end with its EOF token (sym 0).
+ */
+final class TokenWriter {
+  static final int FILE_HEADER = 0xFF;
+
+  private static final byte HEADER[] = ascii("***Processing: ");
+  private static final byte names[][] = new byte[Main.symnames.length][];
+  static {
+    for (int i = 0; i < names.length; i++)
+      if (Main.symnames[i] != null)
+	names[i] = ascii(Main.symnames[i]);
+  }
+
+  private final java.io.OutputStream out;
+  private final boolean binary;
+  private final byte buf[];
+  private int pos = 0;
+
+  TokenWriter(java.io.OutputStream o, boolean bin) {
+    this(o, bin, 1 << 16);
+  }
+
+  TokenWriter(java.io.OutputStream o, boolean bin, int size) {
+    out = o;
+    binary = bin;
+    buf = new byte[Math.max(size, 64)];
+  }
+
+  /** Marks the start of a file's tokens. */
+  void header(String filename) throws java.io.IOException {
+    if (binary) {
+      room(5);
+      buf[pos++] = (byte)FILE_HEADER;
+      putInt(utf8Length(filename));
+      putText(filename);
+    } else {
+      put(HEADER);
+      putText(filename);
+      room(1);
+      buf[pos++] = '\n';
+    }
+  }
+
+  void token(java_cup.runtime.Symbol tok) throws java.io.IOException {
+    if (binary) {
+      room(9);
+      buf[pos++] = (byte)tok.sym;
+      putInt(tok.left);
+      putInt(tok.right);
+      switch (tok.sym) {
+      case sym.ID:
+      case sym.STRING:
+	CharSequence s = (CharSequence)tok.value;
+	room(4);
+	putInt(utf8Length(s));
+	putText(s);
+	break;
+      case sym.INT:
+	room(4);
+	putInt(((Integer)tok.value).intValue());
+	break;
+      }
+      return;
+    }
+
+    put(names[tok.sym]);
+    room(12);
+    buf[pos++] = ' ';
+    putDecimal(tok.left);
+    switch (tok.sym) {
+    case sym.ID:
+      room(2);
+      buf[pos++] = '\t';
+      buf[pos++] = '$';
+      putText((CharSequence)tok.value);
+      break;
+    case sym.INT:
+      room(13);
+      buf[pos++] = '\t';
+      buf[pos++] = '#';
+      putDecimal(((Integer)tok.value).intValue());
+      break;
+    case sym.STRING:
+      room(2);
+      buf[pos++] = ' ';
+      buf[pos++] = '"';
+      putText((CharSequence)tok.value);
+      room(1);
+      buf[pos++] = '"';
+      break;
+    }
+    room(1);
+    buf[pos++] = '\n';
+  }
+
+  /** Writes everything buffered so far to the stream and flushes it. */
+  void flush() throws java.io.IOException {
+    drain();
+    out.flush();
+  }
+
+  private void drain() throws java.io.IOException {
+    if (pos > 0)
+      out.write(buf, 0, pos);
+    pos = 0;
+  }
+
+  /* Make sure n more bytes fit; n is never more than a few dozen. */
+  private void room(int n) throws java.io.IOException {
+    if (pos + n > buf.length)
+      drain();
+  }
+
+  private void put(byte b[]) throws java.io.IOException {
+    room(b.length);
+    System.arraycopy(b, 0, buf, pos, b.length);
+    pos += b.length;
+  }
+
+  private void putInt(int v) {
+    buf[pos++] = (byte)(v >>> 24);
+    buf[pos++] = (byte)(v >>> 16);
+    buf[pos++] = (byte)(v >>> 8);
+    buf[pos++] = (byte)v;
+  }
+
+  /* Caller has made room for 11 bytes. */
+  private void putDecimal(int v) {
+    if (v == Integer.MIN_VALUE) {
+      byte b[] = ascii(String.valueOf(v));
+      System.arraycopy(b, 0, buf, pos, b.length);
+      pos += b.length;
+      return;
+    }
+    if (v < 0) {
+      buf[pos++] = '-';
+      v = -v;
+    }
+    int end = pos;
+    for (int t = v; t >= 10; t /= 10)
+      end++;
+    pos = end + 1;
+    do {
+      buf[end--] = (byte)('0' + v % 10);
+      v /= 10;
+    } while (v != 0);
+  }
+
+  /* UTF-8, a surrogate pair as one 4-byte code point; a lone surrogate
+     becomes '?' as the platform encoder would print it. */
+  private void putText(CharSequence s) throws java.io.IOException {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      int c = s.charAt(i);
+      room(4);
+      if (c < 0x80)
+	buf[pos++] = (byte)c;
+      else if (c < 0x800) {
+	buf[pos++] = (byte)(0xC0 | (c >> 6));
+	buf[pos++] = (byte)(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate((char)c) && i + 1 < n
+		 && Character.isLowSurrogate(s.charAt(i + 1))) {
+	c = Character.toCodePoint((char)c, s.charAt(++i));
+	buf[pos++] = (byte)(0xF0 | (c >> 18));
+	buf[pos++] = (byte)(0x80 | ((c >> 12) & 0x3F));
+	buf[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+	buf[pos++] = (byte)(0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate((char)c))
+	buf[pos++] = '?';
+      else {
+	buf[pos++] = (byte)(0xE0 | (c >> 12));
+	buf[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+	buf[pos++] = (byte)(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private static int utf8Length(CharSequence s) {
+    int n = s.length(), len = n;
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (Character.isHighSurrogate(c) && i + 1 < n
+	  && Character.isLowSurrogate(s.charAt(i + 1))) {
+	len += 2;		// 4 bytes for the two chars
+	++i;
+      } else if (Character.isSurrogate(c))
+	;			// '?'
+      else if (c >= 0x800)
+	len += 2;
+      else if (c >= 0x80)
+	len += 1;
+    }
+    return len;
+  }
+
+  private static byte[] ascii(String s) {
+    byte b[] = new byte[s.length()];
+    for (int i = 0; i < b.length; i++)
+      b[i] = (byte)s.charAt(i);
+    return b;
+  }
+}
@@ -2,14 +2,14 @@ package Parse;
 import ErrorMsg.ErrorMsg;
 
 
-class Yylex implements Lexer {
+class Yylex implements Lexer, TokenCursor {
 	private final int YY_BUFFER_SIZE = 512;
 	private final int YY_F = -1;
 	private final int YY_NO_STATE = -1;
-	private final int YY_NOT_ACCEPT = 0;
-	private final int YY_START = 1;
-	private final int YY_END = 2;
-	private final int YY_NO_ANCHOR = 4;
+	private static final int YY_NOT_ACCEPT = 0;
+	private static final int YY_START = 1;
+	private static final int YY_END = 2;
+	private static final int YY_NO_ANCHOR = 4;
 	private final int YY_BOL = 128;
 	private final int YY_EOF = 129;
 
@@ -26,17 +26,162 @@ private java_cup.runtime.Symbol tok(int kind) {
     return tok(kind, null);
 }
 private java_cup.runtime.Symbol tok(int kind, Object value) {
-    return new java_cup.runtime.Symbol(kind, yychar, yychar+yylength(), value);
+    tokKind = kind;
+    tokStart = yychar;
+    tokEnd = yychar+yylength();
+    if(cursor) return cursorTok;
+    return new java_cup.runtime.Symbol(kind, tokStart, tokEnd, value);
+}
+//Keywords are matched by the identifier rule and told apart here, through
+//the %keyword table, so they need no DFA states of their own.
+private java_cup.runtime.Symbol idTok() {
+    int kw = yykeyword();
+    if(kw >= 0) return tok(kw, null);
+    if(cursor) return tok(sym.ID);
+    return tok(sym.ID, names.intern(yy_buffer, yy_buffer_start, yylength()));
+}
+private java_cup.runtime.Symbol intTok() {
+    tokInt = lexemeValue();
+    if(cursor) return tok(sym.INT);
+    return tok(sym.INT, tokInt);
+}
+//Decimal value of the current lexeme, read straight from the buffer.
+//Anything that overflows goes through parseInt to fail the same way.
+private int lexemeValue() {
+    long v = 0;
+    for(int i = yy_buffer_start; i < yy_buffer_end; i++) {
+      v = v*10 + (yy_buffer[i] - '0');
+      if(v > Integer.MAX_VALUE) return Integer.parseInt(yytext());
+    }
+    return (int)v;
+}
+//Cursor mode (see TokenCursor): tok() only records the token in these
+//fields and hands back one shared Symbol.
+private boolean cursor = false;
+private final java_cup.runtime.Symbol cursorTok = new java_cup.runtime.Symbol(sym.error);
+private int tokKind, tokStart, tokEnd, tokInt;
+private StringBuffer cursorBuffer;
+private Lexeme lexeme;
+public int next() throws java.io.IOException {
+  cursor = true;
+  try {
+    nextToken();
+  } finally {
+    cursor = false;
+  }
+  return tokKind;
+}
+public int kind() { return tokKind; }
+public int start() { return tokStart; }
+public int end() { return tokEnd; }
+public int intValue() { return tokInt; }
+public CharSequence text() {
+  if(tokKind == sym.STRING) return buffer;
+  if(lexeme == null) lexeme = new Lexeme();
+  return lexeme;
+}
+//Lex the rest of the input into buf, EOF included, with no Symbols
+void fill(TokenBuffer buf) throws java.io.IOException {
+  int k;
+  do {
+    k = next();
+    switch(k) {
+    case sym.ID:
+      buf.addValue(k, tokStart, tokEnd,
+		   names.intern(yy_buffer, yy_buffer_start, yylength()));
+      break;
+    case sym.INT:
+      buf.addInt(k, tokStart, tokEnd, tokInt);
+      break;
+    case sym.STRING:
+      buf.addValue(k, tokStart, tokEnd, buffer.toString());
+      break;
+    default:
+      buf.add(k, tokStart, tokEnd);
+    }
+  } while(k != sym.EOF);
+}
+//The current lexeme, read in place from yy_buffer
+private class Lexeme implements CharSequence {
+  public int length() { return yy_buffer_end - yy_buffer_start; }
+  public char charAt(int i) { return yy_buffer[yy_buffer_start + i]; }
+  public CharSequence subSequence(int from, int to) {
+    return new String(yy_buffer, yy_buffer_start + from, to - from);
+  }
+  public String toString() { return yytext(); }
 }
 private ErrorMsg errorMsg;
+//Canonical ID values; pass one table to several lexers to share names
+private NameTable names = new NameTable();
 Yylex(java.io.InputStream s, ErrorMsg e) {
   this(s);
   errorMsg=e;
 }
+Yylex(java.io.InputStream s, ErrorMsg e, NameTable n) {
+  this(s, e);
+  names=n;
+}
+//Lex straight from a memory-mapped file. Bytes are widened as Latin-1
+//into one buffer holding the whole file, so yy_advance() never refills,
+//shifts or doubles it; the reader is only asked once, at EOF.
+Yylex(java.nio.channels.FileChannel ch, ErrorMsg e) throws java.io.IOException {
+  this();
+  errorMsg=e;
+  long size = ch.size();
+  if(size >= Integer.MAX_VALUE)
+    throw new java.io.IOException("File too large to map: " + size + " bytes");
+  java.nio.MappedByteBuffer map =
+    ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+  int n = (int)size;
+  //One spare slot so an empty file never has to grow the buffer
+  yy_buffer = new char[n + 1];
+  for(int i = 0; i < n; i++)
+    yy_buffer[i] = (char)(map.get(i) & 0xff);
+  yy_buffer_read = n;
+  yy_reader = new java.io.BufferedReader(new java.io.StringReader(""), 1);
+}
 //Variables we'll use later
 private int commentDepth = 0;
 private StringBuffer buffer;
 private boolean instring = false;
+//Resume from a checkpoint; reader supplies the input from c.offset on
+Yylex(java.io.Reader reader, ErrorMsg e, LexCheckpoint c) {
+  this(reader);
+  errorMsg=e;
+  yychar = c.offset;
+  yy_at_bol = c.atBol;
+  yybegin(c.lexicalState);
+  commentDepth = c.commentDepth;
+  instring = c.instring;
+  if(c.buffer != null) buffer = new StringBuffer(c.buffer);
+}
+Yylex(java.io.InputStream s, ErrorMsg e, LexCheckpoint c) {
+  this(new java.io.InputStreamReader(s), e, c);
+}
+//Snapshot of the lexer between tokens
+LexCheckpoint checkpoint() {
+  return new LexCheckpoint(yychar + yy_buffer_index - yy_buffer_start,
+			   yy_lexical_state, commentDepth, instring,
+			   instring ? buffer.toString() : null, yy_at_bol);
+}
+//Restart support for IncrementalLexer: lex s[off..len) as if everything
+//before off had already been lexed, ending in state (see state()).
+Yylex(char s[], int off, int len, ErrorMsg e, int state) {
+  this(new java.io.CharArrayReader(s, off, len - off), e,
+       new LexCheckpoint(off, state & 0xff, state >>> 8, false, null,
+			 off == 0 || s[off-1] == '\n'));
+}
+Yylex(char s[], int off, int len, ErrorMsg e, int state, NameTable n) {
+  this(s, off, len, e, state);
+  names=n;
+}
+//The checkpoint of a lexer between tokens packed in an int, for callers
+//that keep one per token: the lexical state in the low byte and the
+//comment depth above it. Between Tiger tokens the lexer is never inside
+//a string, so nothing else is needed to restart.
+int state() {
+  return yy_lexical_state | commentDepth << 8;
+}
 	private java.io.BufferedReader yy_reader;
 	private int yy_buffer_index;
 	private int yy_buffer_read;
@@ -80,8 +225,8 @@ private boolean instring = false;
 	private final int COMMENT = 2;
 	private final int yy_state_dtrans[] = {
 		0,
-		54,
-		69
+		32,
+		42
 	};
 	private void yybegin (int state) {
 		yy_lexical_state = state;
@@ -164,6 +309,67 @@ private boolean instring = false;
 	private int yylength () {
 		return yy_buffer_end - yy_buffer_start;
 	}
+	private static final char yy_kw_text[][] = {
+		"of".toCharArray(),
+		"do".toCharArray(),
+		"else".toCharArray(),
+		"if".toCharArray(),
+		"while".toCharArray(),
+		"break".toCharArray(),
+		"then".toCharArray(),
+		"nil".toCharArray(),
+		"end".toCharArray(),
+		"let".toCharArray(),
+		"array".toCharArray(),
+		"in".toCharArray(),
+		"typedef".toCharArray(),
+		"var".toCharArray(),
+		"to".toCharArray(),
+		"for".toCharArray(),
+		"type".toCharArray()
+	};
+	private static final int yy_kw_value[] = {
+		sym.OF,
+		sym.DO,
+		sym.ELSE,
+		sym.IF,
+		sym.WHILE,
+		sym.BREAK,
+		sym.THEN,
+		sym.NIL,
+		sym.END,
+		sym.LET,
+		sym.ARRAY,
+		sym.IN,
+		sym.TYPE,
+		sym.VAR,
+		sym.TO,
+		sym.FOR,
+		sym.TYPE
+	};
+	private static final int yy_kw_disp[] = {
+		1, 0, 2, 0, 2, 4, 0, 1, 0, 0,
+		0, 0, 6, 0, 3, 14, 23
+	};
+	private int yykeyword () {
+		int len = yy_buffer_end - yy_buffer_start;
+		if (len < 2 || len > 7) {
+			return -1;
+		}
+		int h = (yy_buffer[yy_buffer_start] * 31 + yy_buffer[yy_buffer_end - 1]) * 31 + len;
+		int k = (int) (((h * 0x85ebca6b & 0xffffffffL) * 17) >>> 32);
+		k = (int) ((((h ^ yy_kw_disp[k]) * 0x9e3779b1 & 0xffffffffL) * 17) >>> 32);
+		char text[] = yy_kw_text[k];
+		if (text.length != len) {
+			return -1;
+		}
+		for (int i = 0; i < len; i++) {
+			if (text[i] != yy_buffer[yy_buffer_start + i]) {
+				return -1;
+			}
+		}
+		return yy_kw_value[k];
+	}
 	private char[] yy_double (char buf[]) {
 		int i;
 		char newbuf[];
@@ -186,7 +392,7 @@ private boolean instring = false;
 			throw new Error("Fatal Error.\n");
 		}
 	}
-	private int[][] unpackFromString(int size1, int size2, String st) {
+	private static int[][] unpackFromString(int size1, int size2, String st) {
 		int colonIndex = -1;
 		String lengthString;
 		int sequenceLength = 0;
@@ -223,7 +429,7 @@ private boolean instring = false;
 		}
 		return res;
 	}
-	private int yy_acpt[] = {
+	private static final int yy_acpt[] = {
 		/* 0 */ YY_NOT_ACCEPT,
 		/* 1 */ YY_NO_ANCHOR,
 		/* 2 */ YY_NO_ANCHOR,
@@ -256,108 +462,37 @@ private boolean instring = false;
 		/* 29 */ YY_NO_ANCHOR,
 		/* 30 */ YY_NO_ANCHOR,
 		/* 31 */ YY_NO_ANCHOR,
-		/* 32 */ YY_NO_ANCHOR,
+		/* 32 */ YY_NOT_ACCEPT,
 		/* 33 */ YY_NO_ANCHOR,
 		/* 34 */ YY_NO_ANCHOR,
 		/* 35 */ YY_NO_ANCHOR,
-		/* 36 */ YY_NO_ANCHOR,
+		/* 36 */ YY_NOT_ACCEPT,
 		/* 37 */ YY_NO_ANCHOR,
-		/* 38 */ YY_NO_ANCHOR,
-		/* 39 */ YY_NO_ANCHOR,
-		/* 40 */ YY_NO_ANCHOR,
-		/* 41 */ YY_NO_ANCHOR,
-		/* 42 */ YY_NO_ANCHOR,
+		/* 38 */ YY_NOT_ACCEPT,
+		/* 39 */ YY_NOT_ACCEPT,
+		/* 40 */ YY_NOT_ACCEPT,
+		/* 41 */ YY_NOT_ACCEPT,
+		/* 42 */ YY_NOT_ACCEPT,
 		/* 43 */ YY_NO_ANCHOR,
 		/* 44 */ YY_NO_ANCHOR,
 		/* 45 */ YY_NO_ANCHOR,
 		/* 46 */ YY_NO_ANCHOR,
-		/* 47 */ YY_NO_ANCHOR,
-		/* 48 */ YY_NO_ANCHOR,
-		/* 49 */ YY_NO_ANCHOR,
-		/* 50 */ YY_NO_ANCHOR,
-		/* 51 */ YY_NO_ANCHOR,
-		/* 52 */ YY_NO_ANCHOR,
-		/* 53 */ YY_NO_ANCHOR,
-		/* 54 */ YY_NOT_ACCEPT,
-		/* 55 */ YY_NO_ANCHOR,
-		/* 56 */ YY_NO_ANCHOR,
-		/* 57 */ YY_NO_ANCHOR,
-		/* 58 */ YY_NOT_ACCEPT,
-		/* 59 */ YY_NO_ANCHOR,
-		/* 60 */ YY_NO_ANCHOR,
-		/* 61 */ YY_NOT_ACCEPT,
-		/* 62 */ YY_NO_ANCHOR,
-		/* 63 */ YY_NOT_ACCEPT,
-		/* 64 */ YY_NO_ANCHOR,
-		/* 65 */ YY_NOT_ACCEPT,
-		/* 66 */ YY_NO_ANCHOR,
-		/* 67 */ YY_NOT_ACCEPT,
-		/* 68 */ YY_NO_ANCHOR,
-		/* 69 */ YY_NOT_ACCEPT,
-		/* 70 */ YY_NO_ANCHOR,
-		/* 71 */ YY_NO_ANCHOR,
-		/* 72 */ YY_NO_ANCHOR,
-		/* 73 */ YY_NO_ANCHOR,
-		/* 74 */ YY_NO_ANCHOR,
-		/* 75 */ YY_NO_ANCHOR,
-		/* 76 */ YY_NO_ANCHOR,
-		/* 77 */ YY_NO_ANCHOR,
-		/* 78 */ YY_NO_ANCHOR,
-		/* 79 */ YY_NO_ANCHOR,
-		/* 80 */ YY_NO_ANCHOR,
-		/* 81 */ YY_NO_ANCHOR,
-		/* 82 */ YY_NO_ANCHOR,
-		/* 83 */ YY_NO_ANCHOR,
-		/* 84 */ YY_NO_ANCHOR,
-		/* 85 */ YY_NO_ANCHOR,
-		/* 86 */ YY_NO_ANCHOR,
-		/* 87 */ YY_NO_ANCHOR,
-		/* 88 */ YY_NO_ANCHOR,
-		/* 89 */ YY_NO_ANCHOR,
-		/* 90 */ YY_NO_ANCHOR,
-		/* 91 */ YY_NO_ANCHOR,
-		/* 92 */ YY_NO_ANCHOR,
-		/* 93 */ YY_NO_ANCHOR,
-		/* 94 */ YY_NO_ANCHOR,
-		/* 95 */ YY_NO_ANCHOR,
-		/* 96 */ YY_NO_ANCHOR,
-		/* 97 */ YY_NO_ANCHOR,
-		/* 98 */ YY_NO_ANCHOR
+		/* 47 */ YY_NO_ANCHOR
 	};
-	private int yy_cmap[] = unpackFromString(1,130,
-"51:3,46,51:4,1:2,2,51:2,44,51:18,50,51,43,51:3,21,51,13,14,8,9,3,7,4,6,41:1" +
-"0,5,15,10,12,11,51:2,40:13,48,47,40:4,49,40:6,16,45,17,51,42,51,32,31,40,35" +
-",23,28,40,26,27,40,33,22,40,34,29,37,40,30,39,24,40,38,25,40,36,40,18,20,19" +
-",51:2,0:2")[0];
+	private static final int yy_cmap[] = unpackFromString(1,130,
+"34:3,29,34:4,2:2,1,34:2,26,34:18,33,34,25,34:3,21,34,13,14,8,9,3,7,4,6,23:1" +
+"0,5,15,10,12,11,34:2,22:13,31,30,22:4,32,22:6,16,27,17,34,24,34,22:13,28,22" +
+":5,28,22:6,18,20,19,34:2,0:2")[0];
 
-	private int yy_rmap[] = unpackFromString(1,99,
-"0,1:4,2,3,1:3,4,5,1:10,6,7,1:7,8:12,9,8:4,1:6,10,11,12,13,14,15,16,17,18,19" +
-",20,21,22,23,8,24,25,26,27,28,29,30,31,32,33,34,35,36,37,38,39,40,41,42,43," +
-"44,45,46,47,8,48,49,50,51,52")[0];
+	private static final int yy_rmap[] = unpackFromString(1,48,
+"0,1:5,2,3,1:3,4,5,1:10,6,7,1:7,8,1:2,9,10,1,11,12,13,14,15,1,16,17,1:2")[0];
 
-	private int yy_nxt[][] = unpackFromString(53,52,
-"1,2:2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,89,55,92,93,59,9" +
-"4,62,93,95,96,93,97,64,93:2,98,93:2,23,24,25,-1,24:2,93:3,2,24,-1:64,26,-1:" +
-"47,27,-1:54,28,29,-1:51,30,-1:61,93,66,93:17,68:2,-1:4,93:3,-1:43,23,-1:32," +
-"93:19,68:2,-1:4,93:3,-1:24,93:13,87,93:5,68:2,-1:4,93:3,-1:2,1,48:42,49,48," +
-"56,48:6,-1:22,93:4,72,93:2,31,93:6,73,93:4,68:2,-1:4,93:3,-1:26,50,-1:9,50," +
-"-1:6,58,-1,50,-1,50,61,-1:3,50,-1:9,52,-1:84,63,-1:32,93:6,32,93:5,33,93:6," +
-"68:2,-1:4,93:3,-1:8,53,-1:92,65,-1:26,93:6,34,93:12,68:2,-1:4,93:3,-1:43,50" +
-",-1:32,93:7,35,93:11,68:2,-1:4,93:3,-1:50,67,-1:25,93:2,36,93:16,68:2,-1:4," +
-"93:3,-1:51,50,-1:2,1,51,-1,51:3,57,51,60,51:35,-1,51:7,-1:22,93:17,79,93,68" +
-":2,-1:4,93:3,-1:24,93:13,37,93:5,68:2,-1:4,93:3,-1:24,93,80,93:17,68:2,-1:4" +
-",93:3,-1:24,93:15,81,93:3,68:2,-1:4,93:3,-1:24,93:5,82,93:13,68:2,-1:4,93:3" +
-",-1:24,93:8,38,93:10,68:2,-1:4,93:3,-1:24,93:8,91,93:10,68:2,-1:4,93:3,-1:2" +
-"4,39,93:18,68:2,-1:4,93:3,-1:24,93:8,40,93:10,68:2,-1:4,93:3,-1:24,93,41,93" +
-":17,68:2,-1:4,93:3,-1:24,93:12,42,93:6,68:2,-1:4,93:3,-1:24,93,43,93:17,68:" +
-"2,-1:4,93:3,-1:24,84,93:18,68:2,-1:4,93:3,-1:24,93:10,85,93:8,68:2,-1:4,93:" +
-"3,-1:24,93,44,93:17,68:2,-1:4,93:3,-1:24,93:11,45,93:7,68:2,-1:4,93:3,-1:24" +
-",93:14,46,93:4,68:2,-1:4,93:3,-1:24,93,88,93:17,68:2,-1:4,93:3,-1:24,93:6,4" +
-"7,93:12,68:2,-1:4,93:3,-1:24,70,93:11,71,93:6,68:2,-1:4,93:3,-1:24,93,83,93" +
-":17,68:2,-1:4,93:3,-1:24,93:10,86,93:8,68:2,-1:4,93:3,-1:24,93:4,74,93:14,6" +
-"8:2,-1:4,93:3,-1:24,93:7,75,93:11,68:2,-1:4,93:3,-1:24,93:8,90,93:10,68:2,-" +
-"1:4,93:3,-1:24,93:8,76,93:10,68:2,-1:4,93:3,-1:24,93:5,77,93:13,68:2,-1:4,9" +
-"3:3,-1:24,93:10,78,93:8,68:2,-1:4,93:3,-1:2");
+	private static final int yy_nxt[][] = unpackFromString(18,35,
+"1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25,26,-1,25," +
+"23,25,23:3,3,25,-1:47,27,-1:30,28,-1:37,29,30,-1:34,31,-1:44,23:3,-1:3,23,-" +
+"1,23:3,-1:25,24,-1:11,1,33:24,34,33,35,33:7,-1:23,36,-1,37,-1,37:2,38,-1:3," +
+"37,-1:24,39,-1:41,40,-1:27,37,-1:42,41,-1:35,37,-1:2,1,-1,43:4,44,43,45,43:" +
+"17,-1,43:8,-1:8,46,-1:32,47,-1:28");
 
 	public java_cup.runtime.Symbol nextToken ()
 		throws java.io.IOException {
@@ -383,7 +518,13 @@ private boolean instring = false;
 			if (YY_EOF == yy_lookahead && true == yy_initial) {
 
 	{
-  if(!instring){return tok(sym.EOF, null);}
+  if(instring){
+    //Report the open string and stop instead of spinning at EOF
+    err("Unterminated string");
+    instring = false;
+    yybegin(YYINITIAL);
+  }
+  return tok(sym.EOF, null);
   }
 			}
 			if (YY_F != yy_next_state) {
@@ -411,487 +552,218 @@ private boolean instring = false;
 					case -2:
 						break;
 					case 2:
-						{}
+						{newline();}
 					case -3:
 						break;
 					case 3:
-						{return tok(sym.COMMA, null);}
+						{}
 					case -4:
 						break;
 					case 4:
-						{return tok(sym.DOT, null);}
+						{return tok(sym.COMMA, null);}
 					case -5:
 						break;
 					case 5:
-						{return tok(sym.COLON, null);}
+						{return tok(sym.DOT, null);}
 					case -6:
 						break;
 					case 6:
-						{return tok(sym.DIVIDE, null);}
+						{return tok(sym.COLON, null);}
 					case -7:
 						break;
 					case 7:
-						{return tok(sym.MINUS, null);}
+						{return tok(sym.DIVIDE, null);}
 					case -8:
 						break;
 					case 8:
-						{return tok(sym.TIMES, null);}
+						{return tok(sym.MINUS, null);}
 					case -9:
 						break;
 					case 9:
-						{return tok(sym.PLUS, null);}
+						{return tok(sym.TIMES, null);}
 					case -10:
 						break;
 					case 10:
-						{return tok(sym.LT, null);}
+						{return tok(sym.PLUS, null);}
 					case -11:
 						break;
 					case 11:
-						{return tok(sym.GT, null);}
+						{return tok(sym.LT, null);}
 					case -12:
 						break;
 					case 12:
-						{return tok(sym.EQ, null);}
+						{return tok(sym.GT, null);}
 					case -13:
 						break;
 					case 13:
-						{return tok(sym.LPAREN, null);}
+						{return tok(sym.EQ, null);}
 					case -14:
 						break;
 					case 14:
-						{return tok(sym.RPAREN, null);}
+						{return tok(sym.LPAREN, null);}
 					case -15:
 						break;
 					case 15:
-						{return tok(sym.SEMICOLON, null);}
+						{return tok(sym.RPAREN, null);}
 					case -16:
 						break;
 					case 16:
-						{return tok(sym.LBRACK, null);}
+						{return tok(sym.SEMICOLON, null);}
 					case -17:
 						break;
 					case 17:
-						{return tok(sym.RBRACK, null);}
+						{return tok(sym.LBRACK, null);}
 					case -18:
 						break;
 					case 18:
-						{return tok(sym.LBRACE, null);}
+						{return tok(sym.RBRACK, null);}
 					case -19:
 						break;
 					case 19:
-						{return tok(sym.RBRACE, null);}
+						{return tok(sym.LBRACE, null);}
 					case -20:
 						break;
 					case 20:
-						{return tok(sym.OR, null);}
+						{return tok(sym.RBRACE, null);}
 					case -21:
 						break;
 					case 21:
-						{return tok(sym.AND, null);}
+						{return tok(sym.OR, null);}
 					case -22:
 						break;
 					case 22:
-						{
-  return tok(sym.ID, yytext());
-}
+						{return tok(sym.AND, null);}
 					case -23:
 						break;
 					case 23:
 						{
-  return tok(sym.INT, Integer.parseInt(yytext()));
+  return idTok();
 }
 					case -24:
 						break;
 					case 24:
 						{
-  err("Illegal character: " + yytext() + "(code: " + (int)(yytext().charAt(0)) + ")");
+  return intTok();
 }
 					case -25:
 						break;
 					case 25:
 						{
-  //Found open quote meaning a string is coming
-  yybegin(STRING);
-  instring = true;
-  //reset buffer
-  buffer = new StringBuffer();
+  err("Illegal character: " + yytext() + "(code: " + (int)(yytext().charAt(0)) + ")");
 }
 					case -26:
 						break;
 					case 26:
-						{return tok(sym.ASSIGN, null);}
+						{
+  //Found open quote meaning a string is coming
+  yybegin(STRING);
+  instring = true;
+  //reset buffer; the cursor reuses one since nobody holds on to it
+  if(!cursor)
+    buffer = new StringBuffer();
+  else {
+    if(cursorBuffer == null) cursorBuffer = new StringBuffer();
+    cursorBuffer.setLength(0);
+    buffer = cursorBuffer;
+  }
+}
 					case -27:
 						break;
 					case 27:
+						{return tok(sym.ASSIGN, null);}
+					case -28:
+						break;
+					case 28:
 						{
   commentDepth++;
   yybegin(COMMENT);
 }
-					case -28:
-						break;
-					case 28:
-						{return tok(sym.NEQ, null);}
 					case -29:
 						break;
 					case 29:
-						{return tok(sym.LE, null);}
+						{return tok(sym.NEQ, null);}
 					case -30:
 						break;
 					case 30:
-						{return tok(sym.GE, null);}
+						{return tok(sym.LE, null);}
 					case -31:
 						break;
 					case 31:
-						{return tok(sym.TO, null);}
+						{return tok(sym.GE, null);}
 					case -32:
 						break;
-					case 32:
-						{return tok(sym.IF, null);}
-					case -33:
-						break;
 					case 33:
-						{return tok(sym.IN, null);}
-					case -34:
-						break;
-					case 34:
-						{return tok(sym.OF, null);}
-					case -35:
-						break;
-					case 35:
-						{return tok(sym.DO, null);}
-					case -36:
-						break;
-					case 36:
-						{return tok(sym.LET, null);}
-					case -37:
-						break;
-					case 37:
-						{return tok(sym.END, null);}
-					case -38:
-						break;
-					case 38:
-						{return tok(sym.FOR, null);}
-					case -39:
-						break;
-					case 39:
-						{return tok(sym.NIL, null);}
-					case -40:
-						break;
-					case 40:
-						{return tok(sym.VAR, null);}
-					case -41:
-						break;
-					case 41:
-						{return tok(sym.ELSE, null);}
-					case -42:
-						break;
-					case 42:
-						{return tok(sym.THEN, null);}
-					case -43:
-						break;
-					case 43:
-						{return tok(sym.TYPE, null);}
-					case -44:
-						break;
-					case 44:
-						{return tok(sym.WHILE, null);}
-					case -45:
-						break;
-					case 45:
-						{return tok(sym.BREAK, null);}
-					case -46:
-						break;
-					case 46:
-						{return tok(sym.ARRAY, null);}
-					case -47:
-						break;
-					case 47:
-						{return tok(sym.TYPE, null);}
-					case -48:
-						break;
-					case 48:
 						{
   //If it's not a \ or a " add it to the buffer
-  buffer.append(yytext());
+  buffer.append(yy_buffer[yy_buffer_start]);
 }
-					case -49:
+					case -33:
 						break;
-					case 49:
+					case 34:
 						{
   //end of string
   yybegin(YYINITIAL);
   instring = false;
   return tok(sym.STRING, buffer);
 }
-					case -50:
+					case -34:
+						break;
+					case 35:
+						{
+  err("Illegal character: " + yytext() + "(code: " + (int)(yytext().charAt(0)) + ")");
+}
+					case -35:
 						break;
-					case 50:
+					case 37:
 						{
   //Escape characters
   //Namely a \ with a n, t, ###, \, ", CONT, (WHITESPACE) after
-  //esc is everything after the first backslash
-  String esc = yytext().substring(1, yytext().length());
-  char first = esc.charAt(0);
+  //first is the character right after the backslash
+  char first = yy_buffer[yy_buffer_start + 1];
   //We'll need to do special stuff with control chars later
   if(first != '^'){
     buffer.append(first);
   }
   else if(first == '^'){
-    char controlChar = esc.charAt(1);
+    char controlChar = yy_buffer[yy_buffer_start + 2];
     buffer.append(controlChar);
   }
 }
-					case -51:
+					case -36:
 						break;
-					case 51:
+					case 43:
 						{
   //Ignore anything within comment
 }
-					case -52:
-						break;
-					case 52:
-						{
-  //Comment depth keeps track of how nested we currently are
-  commentDepth++;
-  }
-					case -53:
-						break;
-					case 53:
-						{
-  commentDepth--;
-  //If we're not nested anymore, go back to initial
-  if(commentDepth==0)
-    yybegin(YYINITIAL);
-}
-					case -54:
-						break;
-					case 55:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -55:
-						break;
-					case 56:
-						{
-  err("Illegal character: " + yytext() + "(code: " + (int)(yytext().charAt(0)) + ")");
-}
-					case -56:
+					case -37:
 						break;
-					case 57:
+					case 44:
 						{
   //Ignore anything within comment
 }
-					case -57:
-						break;
-					case 59:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -58:
+					case -38:
 						break;
-					case 60:
+					case 45:
 						{
   //Ignore anything within comment
 }
-					case -59:
-						break;
-					case 62:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -60:
-						break;
-					case 64:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -61:
-						break;
-					case 66:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -62:
-						break;
-					case 68:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -63:
-						break;
-					case 70:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -64:
-						break;
-					case 71:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -65:
-						break;
-					case 72:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -66:
-						break;
-					case 73:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -67:
-						break;
-					case 74:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -68:
-						break;
-					case 75:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -69:
-						break;
-					case 76:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -70:
-						break;
-					case 77:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -71:
-						break;
-					case 78:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -72:
-						break;
-					case 79:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -73:
-						break;
-					case 80:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -74:
-						break;
-					case 81:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -75:
-						break;
-					case 82:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -76:
-						break;
-					case 83:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -77:
-						break;
-					case 84:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -78:
-						break;
-					case 85:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -79:
-						break;
-					case 86:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -80:
-						break;
-					case 87:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -81:
-						break;
-					case 88:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -82:
-						break;
-					case 89:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -83:
-						break;
-					case 90:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -84:
-						break;
-					case 91:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -85:
-						break;
-					case 92:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -86:
-						break;
-					case 93:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -87:
-						break;
-					case 94:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -88:
-						break;
-					case 95:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -89:
-						break;
-					case 96:
-						{
-  return tok(sym.ID, yytext());
-}
-					case -90:
+					case -39:
 						break;
-					case 97:
+					case 46:
 						{
-  return tok(sym.ID, yytext());
-}
-					case -91:
+  //Comment depth keeps track of how nested we currently are
+  commentDepth++;
+  }
+					case -40:
 						break;
-					case 98:
+					case 47:
 						{
-  return tok(sym.ID, yytext());
+  commentDepth--;
+  //If we're not nested anymore, go back to initial
+  if(commentDepth==0)
+    yybegin(YYINITIAL);
 }
-					case -92:
+					case -41:
 						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);